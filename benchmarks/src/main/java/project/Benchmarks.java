@@ -0,0 +1,1162 @@
+package project;
+
+class Benchmarks {
+    static volatile Object sink;
+
+    public static void main(String[] args) {
+        String suite = args.length > 0 ? args[0] : "lookup";
+        int[] sizes = parseSizes(args, new int[] {10_000, 1_000_000, 10_000_000});
+
+        switch (suite) {
+            case "lookup": lookup(sizes); break;
+            case "engine": engine(parseSizes(args, new int[] {1, 2, 4, 8})); break;
+            case "batch": batch(parseSizes(args, new int[] {1_000_000, 5_000_000})); break;
+            case "journal": journal(parseSizes(args, new int[] {1_000_000, 10_000_000})); break;
+            case "catalog": catalog(parseSizes(args, new int[] {1_000_000, 10_000_000})); break;
+            case "genres": genres(parseSizes(args, new int[] {10_000, 100_000})); break;
+            case "query": query(parseSizes(args, new int[] {1_000_000, 5_000_000})); break;
+            case "recommend": recommend(parseSizes(args, new int[] {100_000, 1_000_000})); break;
+            case "graph": graph(parseSizes(args, new int[] {1_000_000, 10_000_000})); break;
+            case "analytics": analytics(parseSizes(args, new int[] {100_000, 1_000_000})); break;
+            case "server": server(parseSizes(args, new int[] {10, 100, 1000})); break;
+            case "core": core(parseSizes(args, new int[] {1_000, 100_000, 1_000_000, 10_000_000})); break;
+            case "due": due(parseSizes(args, new int[] {1_000_000, 5_000_000})); break;
+            case "waitlist": waitlist(parseSizes(args, new int[] {1, 2, 4, 8})); break;
+            case "undo": undo(parseSizes(args, new int[] {1_000_000, 10_000_000})); break;
+            case "shards": shards(parseSizes(args, new int[] {1, 2, 4, 8})); break;
+            case "render": render(parseSizes(args, new int[] {10_000, 100_000})); break;
+            case "import": importer(parseSizes(args, new int[] {1_000_000})); break;
+            case "memory": memory(parseSizes(args, new int[] {10_000_000})); break;
+            case "listing": listing(parseSizes(args, new int[] {1_000_000})); break;
+            case "replay": replay(parseSizes(args, new int[] {1_000_000})); break;
+            default:
+                System.out.println("Unknown benchmark: " + suite);
+                System.out.println("Usage: Benchmarks <lookup|engine|batch|journal|catalog|genres|query|recommend|graph|analytics|server|core|due|waitlist|undo|shards|render|import|memory|listing|replay> [size...]");
+        }
+    }
+
+    static void lookup(int[] sizes) {
+        System.out.println("=== Customer/Movie lookup: list walk vs IntObjectMap (ns/op) ===");
+        System.out.printf("%12s %18s %18s %18s %18s%n", "size", "customer walk", "customer index", "movie scan", "movie index");
+        for (int size : sizes) {
+            java.util.Random random = new java.util.Random(42);
+            Customer head = null;
+            IntObjectMap<Customer> customerIndex = new IntObjectMap<>(size);
+            java.util.ArrayList<Movie> movies = new java.util.ArrayList<>(size);
+            IntObjectMap<Movie> movieIndex = new IntObjectMap<>(size);
+            for (int id = 0; id < size; id++) {
+                Customer customer = new Customer(id, "c" + id);
+                customer.next = head;
+                head = customer;
+                customerIndex.put(id, customer);
+                Movie movie = new Movie(id, "m" + id, "g" + (id % 64));
+                movies.add(movie);
+                movieIndex.put(id, movie);
+            }
+
+            int[] probes = new int[1 << 16];
+            for (int i = 0; i < probes.length; i++) probes[i] = random.nextInt(size);
+            int linearOps = (int) Math.max(64, Math.min(probes.length, 200_000_000L / size));
+            int indexedOps = 5_000_000;
+
+            final Customer listHead = head;
+            double listWalk = measure(linearOps, i -> {
+                int id = probes[i & (probes.length - 1)];
+                Customer current = listHead;
+                while (current != null && current.id != id) current = current.next;
+                return current;
+            });
+            double customerLookup = measure(indexedOps, i -> customerIndex.get(probes[i & (probes.length - 1)]));
+            double arrayScan = measure(linearOps, i -> {
+                int id = probes[i & (probes.length - 1)];
+                for (Movie movie : movies) {
+                    if (movie.id == id) return movie;
+                }
+                return null;
+            });
+            double movieLookup = measure(indexedOps, i -> movieIndex.get(probes[i & (probes.length - 1)]));
+
+            System.out.printf("%12d %18.1f %18.1f %18.1f %18.1f%n", size, listWalk, customerLookup, arrayScan, movieLookup);
+        }
+    }
+
+    static void engine(int[] workerCounts) {
+        int customers = 100_000;
+        int titles = 1_000_000;
+        int producers = 4;
+        int requestsPerProducer = 500_000;
+        System.out.println("=== RentalEngine stress: " + producers + " producers x " + requestsPerProducer
+                + " requests, " + titles + " movies ===");
+        for (int workers : workerCounts) {
+            for (boolean virtualThreads : new boolean[] {false, true}) {
+                populateStore(customers, titles);
+
+                RentalEngine engine = new RentalEngine(1 << 16, workers, virtualThreads);
+                engine.start();
+                Thread[] threads = new Thread[producers];
+                long start = System.nanoTime();
+                for (int p = 0; p < producers; p++) {
+                    long seed = p;
+                    threads[p] = new Thread(() -> {
+                        java.util.SplittableRandom random = new java.util.SplittableRandom(seed);
+                        for (int i = 0; i < requestsPerProducer; i++) {
+                            engine.submitBlocking(new Request(random.nextInt(customers + 100), random.nextInt(titles + 100)));
+                        }
+                    });
+                    threads[p].start();
+                }
+                try {
+                    for (Thread thread : threads) thread.join();
+                    engine.shutdown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                long processed = engine.count(RentalStatus.PROCESSED);
+                long rentedMovies = Project.movies.stream().filter(Movie::isRented).count();
+                boolean consistent = processed == rentedMovies && processed == Project.history.size();
+                System.out.printf("workers=%-3d %-8s %,12.0f req/s  latency %s  processed=%d waitlisted=%d failed=%d %s%n",
+                        workers, engine.executorName(), producers * requestsPerProducer / seconds,
+                        engine.latency().summary("us", 1_000.0),
+                        processed, engine.count(RentalStatus.WAITLISTED), engine.count(RentalStatus.ALREADY_RENTED)
+                                + engine.count(RentalStatus.CUSTOMER_NOT_FOUND) + engine.count(RentalStatus.MOVIE_NOT_FOUND),
+                        consistent ? "OK" : "INCONSISTENT");
+            }
+        }
+    }
+
+    static void batch(int[] sizes) {
+        System.out.println("=== Reconciliation import: per-request rent() vs processBatch() ===");
+        for (int size : sizes) {
+            java.util.List<Request> requests = new java.util.ArrayList<>(size);
+            java.util.SplittableRandom random = new java.util.SplittableRandom(7);
+            for (int i = 0; i < size; i++) {
+                requests.add(new Request(random.nextInt(size / 10 + 10), random.nextInt(size + size / 20)));
+            }
+
+            populateStore(size / 10, size);
+            long start = System.nanoTime();
+            long processed = 0;
+            for (Request request : requests) {
+                if (Project.rentOrWait(request) == RentalStatus.PROCESSED) processed++;
+            }
+            double single = (System.nanoTime() - start) / 1e6;
+
+            populateStore(size / 10, size);
+            start = System.nanoTime();
+            BatchResult result = Project.processBatch(requests);
+            double batched = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("%,12d requests  single %,10.1f ms  batch %,10.1f ms  (%d vs %d processed)%n",
+                    size, single, batched, processed, result.count(RentalStatus.PROCESSED));
+        }
+    }
+
+    static void journal(int[] sizes) {
+        System.out.println("=== RentalJournal write throughput (group commit, fsync on) ===");
+        int records = 200_000;
+        for (int syncEvery : new int[] {1, 64, 4096}) {
+            int count = syncEvery == 1 ? records / 20 : records;
+            java.nio.file.Path dir = temporaryDirectory();
+            try (RentalJournal journal = new RentalJournal(dir, syncEvery, 10, true, 0)) {
+                journal.recover((in, version) -> { }, null);
+                long start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    journal.logRental(i, i, start, start + Project.LOAN_PERIOD_MILLIS);
+                }
+                journal.flush();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("syncEvery=%-5d %,12.0f records/s%n", syncEvery, count / seconds);
+            } catch (java.io.IOException e) {
+                System.out.println("Journal benchmark failed: " + e.getMessage());
+            }
+            deleteRecursively(dir);
+        }
+
+        System.out.println("=== Recovery: snapshot at 90% of rentals + journal tail ===");
+        for (int size : sizes) {
+            java.nio.file.Path dir = temporaryDirectory();
+            int customers = Math.max(1, size / 10);
+            try {
+                resetStore();
+                Project.journal = new RentalJournal(dir, 4096, 10, true, 0);
+                Project.journal.recover(Project::readSnapshot, new Project.JournalReplayer());
+                long start = System.nanoTime();
+                for (int id = 0; id < customers; id++) {
+                    Project.registerCustomer(id, "c" + id);
+                }
+                for (int id = 0; id < size; id++) {
+                    Project.registerMovie(id, "m" + id, "g" + (id % 64));
+                }
+                for (int id = 0; id < size; id++) {
+                    if (id == size - size / 10) Project.checkpoint();
+                    Project.rent(new Request(id % customers, id));
+                }
+                Project.closeJournal();
+                double writeSeconds = (System.nanoTime() - start) / 1e9;
+
+                resetStore();
+                start = System.nanoTime();
+                RentalJournal recovered = new RentalJournal(dir, 4096, 10, true, 0);
+                long replayed = recovered.recover(Project::readSnapshot, new Project.JournalReplayer());
+                double recoverSeconds = (System.nanoTime() - start) / 1e9;
+                recovered.close();
+                System.out.printf("%,12d rentals  load+log %6.2f s  recovery %6.2f s  (%d tail records, %d rentals restored)%n",
+                        size, writeSeconds, recoverSeconds, replayed, Project.history.size());
+            } catch (java.io.IOException e) {
+                System.out.println("Recovery benchmark failed: " + e.getMessage());
+            }
+            deleteRecursively(dir);
+        }
+    }
+
+    static void catalog(int[] sizes) {
+        System.out.println("=== Mapped catalog vs ArrayList<Movie> ===");
+        for (int size : sizes) {
+            java.nio.file.Path dir = temporaryDirectory();
+            java.nio.file.Path file = dir.resolve("movies.catalog");
+            long heapBefore = usedHeap();
+            java.util.ArrayList<Movie> list = new java.util.ArrayList<>(size);
+            for (int id = 0; id < size; id++) {
+                list.add(new Movie(id, "Movie title " + id, "Genre " + (id % 300)));
+            }
+            long listHeap = usedHeap() - heapBefore;
+            try {
+                long start = System.nanoTime();
+                MappedCatalog.write(file, list);
+                double writeMillis = (System.nanoTime() - start) / 1e6;
+                list = null;
+                heapBefore = usedHeap();
+
+                start = System.nanoTime();
+                try (MappedCatalog catalog = MappedCatalog.open(file)) {
+                    double openMillis = (System.nanoTime() - start) / 1e6;
+                    long mappedHeap = usedHeap() - heapBefore;
+                    java.util.SplittableRandom random = new java.util.SplittableRandom(3);
+                    int[] probes = new int[1 << 16];
+                    for (int i = 0; i < probes.length; i++) probes[i] = random.nextInt(size);
+                    double find = measure(2_000_000, i -> catalog.find(probes[i & (probes.length - 1)]));
+
+                    start = System.nanoTime();
+                    int genre = catalog.genreOrdinal("Genre 7");
+                    long available = 0;
+                    for (int i = 0; i < catalog.genreSize(genre); i++) {
+                        if (!catalog.isRented(catalog.genreRow(genre, i))) available++;
+                    }
+                    double genreMillis = (System.nanoTime() - start) / 1e6;
+
+                    System.out.printf("%,12d movies  file %,6d MB  write %,8.1f ms  open %,6.1f ms  list heap %,6d MB  mapped heap %,6d KB  find %5.1f ns  genre scan %6.2f ms (%d)%n",
+                            size, java.nio.file.Files.size(file) >> 20, writeMillis, openMillis, listHeap >> 20,
+                            Math.max(0, mappedHeap) >> 10, find, genreMillis, available);
+                }
+            } catch (java.io.IOException e) {
+                System.out.println("Catalog benchmark failed: " + e.getMessage());
+            }
+            deleteRecursively(dir);
+        }
+    }
+
+    static void genres(int[] sizes) {
+        System.out.println("=== MovieCategoryTree with many genres (10 movies per genre) ===");
+        for (int genreCount : sizes) {
+            String[] names = new String[genreCount];
+            for (int i = 0; i < genreCount; i++) names[i] = String.format("genre-%08d", i);
+            int movieCount = genreCount * 10;
+            java.util.SplittableRandom random = new java.util.SplittableRandom(11);
+
+            for (String order : new String[] {"sorted", "reversed", "random", "skewed"}) {
+                Movie[] batch = new Movie[movieCount];
+                for (int i = 0; i < movieCount; i++) {
+                    int genre;
+                    switch (order) {
+                        case "sorted": genre = i / 10; break;
+                        case "reversed": genre = genreCount - 1 - i / 10; break;
+                        case "random": genre = random.nextInt(genreCount); break;
+                        default:
+                            genre = random.nextInt(4) == 0 ? i / 10 : (int) (genreCount * Math.pow(random.nextDouble(), 4));
+                    }
+                    batch[i] = new Movie(i, "m" + i, names[genre]);
+                }
+
+                MovieCategoryTree tree = new MovieCategoryTree();
+                long start = System.nanoTime();
+                for (Movie movie : batch) tree.addMovie(movie);
+                double insert = (System.nanoTime() - start) / (double) movieCount;
+
+                double lookup = measure(2_000_000, i -> tree.findGenre(names[(int) ((i * 7919L) % genreCount)]));
+                start = System.nanoTime();
+                int inRange = 0;
+                for (java.util.Iterator<CategoryNode> it = tree.range(names[genreCount / 4], names[genreCount / 2]); it.hasNext(); it.next()) {
+                    inRange++;
+                }
+                double range = (System.nanoTime() - start) / 1e3;
+
+                System.out.printf("%,9d genres %-9s insert %6.1f ns/movie  lookup %6.1f ns  height %3d  range of %,d in %8.1f us%n",
+                        tree.genreCount, order, insert, lookup, tree.height(), inRange, range);
+            }
+        }
+    }
+
+    static void query(int[] sizes) {
+        System.out.println("=== MovieQueryIndex vs scanning Project.movies (us/query) ===");
+        for (int size : sizes) {
+            resetStore();
+            java.util.SplittableRandom random = new java.util.SplittableRandom(5);
+            for (int id = 0; id < size; id++) {
+                Movie movie = Project.registerMovie(id, "Title " + Integer.toString(random.nextInt(1 << 30), 36), "Genre " + (id % 300));
+                if (random.nextInt(3) == 0) {
+                    movie.tryRent();
+                    Project.movieSearch.rentedChanged(movie);
+                }
+            }
+
+            double indexedGenre = measure(200, i -> Project.movieSearch.query().inGenre("Genre " + (i % 300)).available().count()) / 1e3;
+            double scannedGenre = measure(20, i -> {
+                String genre = "Genre " + (i % 300);
+                int count = 0;
+                for (Movie movie : Project.movies) {
+                    if (!movie.isRented() && movie.genre().equals(genre)) count++;
+                }
+                return count;
+            }) / 1e3;
+            double indexedPrefix = measure(200, i -> Project.movieSearch.query().titleStartsWith("title " + Integer.toString(i % 36, 36) + "a").count()) / 1e3;
+            double scannedPrefix = measure(20, i -> {
+                String prefix = "title " + Integer.toString(i % 36, 36) + "a";
+                int count = 0;
+                for (Movie movie : Project.movies) {
+                    if (movie.title().toLowerCase(java.util.Locale.ROOT).startsWith(prefix)) count++;
+                }
+                return count;
+            }) / 1e3;
+            double indexedRented = measure(200, i -> Project.movieSearch.query().rented().count()) / 1e3;
+
+            System.out.printf("%,12d movies  genre+available %,9.1f vs %,9.1f  prefix %,9.1f vs %,9.1f  all rented %,9.1f%n",
+                    size, indexedGenre, scannedGenre, indexedPrefix, scannedPrefix, indexedRented);
+        }
+    }
+
+    static void recommend(int[] sizes) {
+        System.out.println("=== RecommendationEngine: 2-hop top-10 over customers with ~10 friends and 5 rentals each ===");
+        for (int customers : sizes) {
+            populateStore(customers, customers * 2);
+            java.util.SplittableRandom random = new java.util.SplittableRandom(9);
+            for (int id = 0; id < customers; id++) {
+                Project.recommendationGraph.addCustomer(id);
+            }
+            for (int i = 0; i < customers * 5; i++) {
+                Project.recommendationGraph.addConnection(random.nextInt(customers), random.nextInt(customers));
+            }
+            for (int i = 0; i < customers * 5; i++) {
+                Movie movie = Project.findMovie(random.nextInt(customers * 2));
+                if (Project.rent(new Request(random.nextInt(customers), movie.id)) == RentalStatus.PROCESSED) {
+                    movie.release();
+                }
+            }
+            Project.graphAnalytics.recomputeAll();
+
+            int calls = 20_000;
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                sink = Project.recommender.recommend(random.nextInt(customers), 10);
+            }
+            double cold = calls / ((System.nanoTime() - start) / 1e9);
+
+            int hot = Math.min(customers, 1_000);
+            start = System.nanoTime();
+            for (int i = 0; i < calls * 10; i++) {
+                sink = Project.recommender.recommend(random.nextInt(hot), 10);
+            }
+            double cached = calls * 10 / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                if (i % 10 == 0) {
+                    Movie movie = Project.findMovie(random.nextInt(customers * 2));
+                    if (Project.rent(new Request(random.nextInt(hot), movie.id)) == RentalStatus.PROCESSED) movie.release();
+                }
+                sink = Project.recommender.recommend(random.nextInt(hot), 10);
+            }
+            double mixed = calls / ((System.nanoTime() - start) / 1e9);
+
+            System.out.printf("%,10d customers  uncached %,10.0f calls/s  cached %,12.0f calls/s  10%% rentals mixed in %,10.0f calls/s%n",
+                    customers, cold, cached, mixed);
+        }
+    }
+
+    static void graph(int[] sizes) {
+        System.out.println("=== Friendship graph: HashMap<Integer, List<Integer>> vs CsrGraph ===");
+        for (int connections : sizes) {
+            int customers = Math.max(2, connections / 10);
+            int[] from = new int[connections];
+            int[] to = new int[connections];
+            java.util.SplittableRandom random = new java.util.SplittableRandom(13);
+            for (int i = 0; i < connections; i++) {
+                from[i] = random.nextInt(customers);
+                to[i] = random.nextInt(customers);
+            }
+
+            long heapBefore = usedHeap();
+            long start = System.nanoTime();
+            java.util.Map<Integer, java.util.List<Integer>> map = new java.util.HashMap<>();
+            for (int i = 0; i < connections; i++) {
+                map.computeIfAbsent(from[i], key -> new java.util.ArrayList<>()).add(to[i]);
+                map.computeIfAbsent(to[i], key -> new java.util.ArrayList<>()).add(from[i]);
+            }
+            double mapBuild = (System.nanoTime() - start) / 1e6;
+            long mapHeap = usedHeap() - heapBefore;
+            start = System.nanoTime();
+            long mapSum = 0;
+            for (int id = 0; id < customers; id++) {
+                java.util.List<Integer> friends = map.get(id);
+                if (friends != null) for (int friend : friends) mapSum += friend;
+            }
+            double mapScan = (System.nanoTime() - start) / 1e6;
+            map = null;
+
+            heapBefore = usedHeap();
+            start = System.nanoTime();
+            RecommendationGraph graph = new RecommendationGraph();
+            for (int i = 0; i < connections; i++) {
+                graph.addConnection(from[i], to[i]);
+            }
+            graph.adjacency.merge();
+            double csrBuild = (System.nanoTime() - start) / 1e6;
+            long csrHeap = usedHeap() - heapBefore;
+            CsrGraph.Cursor cursor = graph.adjacency.cursor();
+            start = System.nanoTime();
+            long csrSum = 0;
+            for (int id = 0; id < customers; id++) {
+                for (cursor.reset(id); cursor.hasNext(); ) csrSum += cursor.next();
+            }
+            double csrScan = (System.nanoTime() - start) / 1e6;
+            sink = mapSum + csrSum;
+
+            System.out.printf("%,12d connections  map: build %,8.0f ms  heap %,6d MB  scan %,7.1f ms   csr: build %,8.0f ms  heap %,6d MB  scan %,7.1f ms  (%,d unique)%n",
+                    connections, mapBuild, mapHeap >> 20, mapScan, csrBuild, csrHeap >> 20, csrScan, graph.connectionCount());
+        }
+    }
+
+    static void analytics(int[] sizes) {
+        System.out.println("=== Graph analytics: full recomputation at 1/4/16 threads, incremental refresh ===");
+        System.out.println("(" + Runtime.getRuntime().availableProcessors() + " processors available)");
+        for (int customers : sizes) {
+            RecommendationGraph graph = new RecommendationGraph();
+            java.util.SplittableRandom random = new java.util.SplittableRandom(29);
+            int communitySize = 50;
+            for (int i = 0; i < customers * 5; i++) {
+                int a = random.nextInt(customers);
+                int b = random.nextInt(10) < 8
+                        ? (a / communitySize) * communitySize + random.nextInt(communitySize)
+                        : random.nextInt(customers);
+                graph.addConnection(a, Math.min(b, customers - 1));
+            }
+            graph.adjacency.merge();
+
+            for (int threads : new int[] {1, 4, 16}) {
+                GraphAnalytics analytics = new GraphAnalytics(graph, threads);
+                analytics.recomputeAll();
+                long start = System.nanoTime();
+                int runs = 3;
+                for (int i = 0; i < runs; i++) analytics.recomputeAll();
+                double millis = (System.nanoTime() - start) / 1e6 / runs;
+                System.out.printf("%,10d customers %,11d connections  %2d threads: full %,9.1f ms  (%,d groups, %,d communities)%n",
+                        customers, graph.connectionCount(), threads, millis, analytics.componentCount(), analytics.communityCount());
+            }
+
+            GraphAnalytics analytics = new GraphAnalytics(graph);
+            analytics.refresh();
+            int updates = 100;
+            long start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                int a = random.nextInt(customers);
+                int b = random.nextInt(customers);
+                if (graph.addConnection(a, b)) analytics.connectionAdded(a, b);
+                analytics.refresh();
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / updates;
+            System.out.printf("%,10d customers  incremental refresh after one connection: %,9.2f ms  (%d full, %d incremental)%n",
+                    customers, millis, analytics.fullRuns(), analytics.incrementalRuns());
+        }
+    }
+
+    static void server(int[] clientCounts) {
+        System.out.println("=== Command server over loopback: closed-loop clients, 5 s per run ===");
+        for (int clients : clientCounts) {
+            resetStore();
+            try (RentalServer server = new RentalServer(Project.service, 0, Runtime.getRuntime().availableProcessors() * 2)) {
+                server.start();
+                LoadGenerator generator = new LoadGenerator(clients, 10_000, 20_000);
+                generator.seed(server.address());
+                generator.run(server.address(), 5);
+                System.out.println(generator.report());
+            } catch (java.io.IOException e) {
+                System.out.println("Server run with " + clients + " clients failed: " + e.getMessage());
+            }
+        }
+    }
+
+    static void core(int[] sizes) {
+        System.out.println("=== Core operations on a synthetic dataset (ns/op; allocation per op: benchmarks.jar with the JMH GC profiler) ===");
+        System.out.printf("%12s  %-22s %12s %14s%n", "size", "operation", "ns/op", "ops/s");
+        for (int size : sizes) {
+            resetStore();
+            Dataset dataset = Dataset.ofSize(size);
+            long start = System.nanoTime();
+            dataset.load();
+            System.out.printf("%12s  loaded %s in %,d ms%n", "", dataset, (System.nanoTime() - start) / 1_000_000);
+
+            int ops = Math.min(size, 100_000);
+            int[] customerIds = new int[ops];
+            int[] movieIds = new int[ops];
+            java.util.SplittableRandom random = new java.util.SplittableRandom(dataset.seed);
+            for (int i = 0; i < ops; i++) {
+                customerIds[i] = dataset.customerId(random.nextInt(dataset.customers));
+                movieIds[i] = dataset.movieId(random.nextInt(dataset.movies));
+            }
+
+            report(size, "findCustomer", ops, i -> Project.findCustomer(customerIds[i % ops]));
+            report(size, "findMovie", ops, i -> Project.findMovie(movieIds[i % ops]));
+            report(size, "categoryTree.addMovie", ops, i -> {
+                Project.categoryTree.addMovie(new Movie(size + i + 1, "t", Dataset.GENRES[i % Dataset.GENRES.length]));
+                return null;
+            });
+            report(size, "addConnection", ops,
+                    i -> Project.recommendationGraph.addConnection(customerIds[i % ops], customerIds[(i * 7 + 3) % ops]));
+
+            int warmedOps = ops + ops / 10;
+            for (int i = 0; i < warmedOps; i++) Project.service.enqueueRental(customerIds[i % ops], movieIds[i % ops]);
+            report(size, "processRequest", ops, i -> Project.service.processRequest());
+            report(size, "undoRental", Math.min(ops, (Project.history.size() - 1) * 10 / 11), i -> Project.service.undo());
+            Project.graphAnalytics.recomputeAll();
+            report(size, "showRecommendations", ops, i -> Project.recommender.recommend(customerIds[i % ops], 10));
+        }
+    }
+
+    static void due(int[] sizes) {
+        System.out.println("=== Overdue detection: due-date heap vs scanning every rental each tick ===");
+        for (int rentals : sizes) {
+            populateStore(Math.max(1, rentals / 10), rentals);
+            java.util.SplittableRandom random = new java.util.SplittableRandom(17);
+            long now = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < rentals; i++) {
+                Project.movies.get(i).tryRent();
+                long dueAt = now + random.nextLong(Project.LOAN_PERIOD_MILLIS * 2);
+                int entry = Project.history.append(i % (rentals / 10 + 1), i, now, dueAt);
+                Project.dueDates.schedule(entry, dueAt, DueScheduler.DUE);
+            }
+            double scheduleNs = (System.nanoTime() - start) / (double) rentals;
+
+            int ticks = 1000;
+            long tick = Project.LOAN_PERIOD_MILLIS * 2 / ticks;
+            start = System.nanoTime();
+            long expired = 0;
+            for (int t = 1; t <= ticks; t++) expired += Project.expireDueRentals(now + t * tick);
+            double heapMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            long found = 0;
+            int scannedTicks = 10;
+            for (int t = 1; t <= scannedTicks; t++) {
+                long at = now + t * tick * (ticks / scannedTicks);
+                for (int entry = 0; entry < Project.history.size(); entry++) {
+                    if (Project.history.isActive(entry) && Project.history.dueAt(entry) <= at) found++;
+                }
+            }
+            double scanMillisPerTick = (System.nanoTime() - start) / 1e6 / scannedTicks;
+            sink = found;
+
+            System.out.printf("%,12d rentals  schedule %,6.0f ns/rental  heap: %,d ticks in %,8.1f ms (%,d expirations, %,d overdue)  scan: %,8.2f ms/tick%n",
+                    rentals, scheduleNs, ticks, heapMillis, expired, Project.history.overdueCount(), scanMillisPerTick);
+        }
+    }
+
+    static void waitlist(int[] threadCounts) {
+        int titles = 100;
+        int copies = 5;
+        int customers = 10_000;
+        int opsPerThread = 200_000;
+        System.out.printf("=== Multi-copy inventory: %d titles x %d copies, threads alternating rent-or-wait and return ===%n", titles, copies);
+        for (int threads : threadCounts) {
+            resetStore();
+            for (int id = 0; id < customers; id++) Project.registerCustomer(id, "Customer " + id);
+            for (int id = 0; id < titles; id++) {
+                Project.addCopies(Project.registerMovie(id, "Title " + id, "Genre " + (id % 10)), copies - 1);
+            }
+            long parkedBefore = Metrics.waitlistParked.sum();
+            long fulfilledBefore = Metrics.waitlistFulfilled.sum();
+            java.util.concurrent.atomic.LongAdder processed = new java.util.concurrent.atomic.LongAdder();
+            Thread[] workers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                workers[t] = new Thread(() -> {
+                    java.util.SplittableRandom random = new java.util.SplittableRandom(seed);
+                    for (int i = 0; i < opsPerThread; i++) {
+                        int movieId = random.nextInt(titles);
+                        if (random.nextInt(100) < 55) {
+                            if (Project.rentOrWait(new Request(random.nextInt(customers), movieId)) == RentalStatus.PROCESSED) {
+                                processed.increment();
+                            }
+                        } else {
+                            Project.returnMovie(movieId);
+                        }
+                    }
+                });
+                workers[t].start();
+            }
+            try {
+                for (Thread worker : workers) worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            boolean consistent = true;
+            for (int id = 0; id < titles; id++) {
+                Movie movie = Project.findMovie(id);
+                int active = 0;
+                for (int entry = Project.history.latestForMovie(id); entry != RentalLedger.NONE; entry = Project.history.previousForMovie(entry)) {
+                    if (Project.history.isActive(entry)) active++;
+                }
+                if (active + movie.available != movie.copies || (movie.available > 0 && movie.hasWaiters())) consistent = false;
+            }
+            System.out.printf("threads=%-3d %,12.0f ops/s  %,d rented immediately, %,d parked, %,d fulfilled from waitlists, %,d still waiting %s%n",
+                    threads, threads * opsPerThread / seconds, processed.sum(), Metrics.waitlistParked.sum() - parkedBefore,
+                    Metrics.waitlistFulfilled.sum() - fulfilledBefore, Project.waitlisted.sum(), consistent ? "OK" : "INCONSISTENT");
+        }
+    }
+
+    static void undo(int[] sizes) {
+        int titles = 100_000;
+        int customers = 100_000;
+        System.out.println("=== Undo log: rent/return operations, then undo and redo the retained tail ===");
+        System.out.printf("%12s %14s %14s %12s %12s %14s %14s %10s%n",
+                "operations", "record ops/s", "undo ops/s", "retained", "compacted", "redo ops/s", "heap MB", "state");
+        for (int size : sizes) {
+            resetStore();
+            for (int id = 0; id < customers; id++) Project.registerCustomer(id, "Customer " + id);
+            for (int id = 0; id < titles; id++) Project.registerMovie(id, "Title " + id, "Genre " + (id % 10));
+            Project.transactions.clear();
+            long heapBefore = usedHeap();
+
+            java.util.SplittableRandom random = new java.util.SplittableRandom(11);
+            long start = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                int movieId = random.nextInt(titles);
+                if (random.nextBoolean()) {
+                    Project.rent(new Request(random.nextInt(customers), movieId));
+                } else {
+                    Project.returnMovie(movieId);
+                }
+            }
+            double recordSeconds = (System.nanoTime() - start) / 1e9;
+            long heapBytes = usedHeap() - heapBefore;
+            int active = Project.history.activeCount();
+            long compacted = Project.transactions.compactedTransactions();
+
+            int undone = 0;
+            start = System.nanoTime();
+            while (Project.undo() != null) undone++;
+            double undoSeconds = (System.nanoTime() - start) / 1e9;
+            int redone = 0;
+            start = System.nanoTime();
+            while (Project.redo() != null) redone++;
+            double redoSeconds = (System.nanoTime() - start) / 1e9;
+
+            boolean consistent = redone == undone && Project.history.activeCount() == active;
+            System.out.printf("%,12d %,14.0f %,14.0f %,12d %,12d %,14.0f %14.1f %10s%n", size, size / recordSeconds,
+                    undone / undoSeconds, undone, compacted, redone / redoSeconds, heapBytes / 1e6,
+                    consistent ? "OK" : "INCONSISTENT");
+        }
+    }
+
+    static void report(int size, String operation, int ops, Operation body) {
+        if (ops <= 0) return;
+        double nanos = measure(ops, body);
+        System.out.printf("%,12d  %-22s %,12.1f %,14.0f%n", size, operation, nanos, 1e9 / nanos);
+    }
+
+    static void shards(int[] partitionCounts) {
+        int customers = 200_000;
+        int titles = 200_000;
+        int copies = 3;
+        int producers = 4;
+        int opsPerProducer = 1_000_000;
+        System.out.printf("=== Sharded store: %d producers x %,d rent/return ops, %,d customers, %,d titles x %d copies, %d cores ===%n",
+                producers, opsPerProducer, customers, titles, copies, Runtime.getRuntime().availableProcessors());
+        double baseline = 0;
+        for (int partitionCount : partitionCounts) {
+            ShardedStore store = new ShardedStore(partitionCount, 1 << 16);
+            store.start();
+            for (int id = 0; id < customers; id++) store.addCustomer(new Customer(id, "c" + id));
+            for (int id = 0; id < titles; id++) {
+                Movie movie = new Movie(id, "m" + id, "g" + (id % 64));
+                movie.setAvailability(copies, copies);
+                store.addMovie(movie);
+            }
+            try {
+                store.awaitQuiescence();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            Thread[] threads = new Thread[producers];
+            long start = System.nanoTime();
+            for (int p = 0; p < producers; p++) {
+                long seed = p;
+                threads[p] = new Thread(() -> {
+                    java.util.SplittableRandom random = new java.util.SplittableRandom(seed);
+                    for (int i = 0; i < opsPerProducer; i++) {
+                        int movieId = random.nextInt(titles + 100);
+                        if (random.nextInt(100) < 60) {
+                            store.rent(new Request(random.nextInt(customers + 100), movieId));
+                        } else {
+                            store.returnMovie(movieId);
+                        }
+                        if ((i & 0xFFFF) == 0 && random.nextInt(4) == 0) store.removeCustomer(random.nextInt(customers));
+                    }
+                });
+                threads[p].start();
+            }
+            try {
+                for (Thread thread : threads) thread.join();
+                store.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            double throughput = producers * (double) opsPerProducer / ((System.nanoTime() - start) / 1e9);
+            if (baseline == 0) baseline = throughput / partitionCount;
+
+            String problem = store.verify();
+            long processed = store.count(RentalStatus.PROCESSED);
+            System.out.printf("partitions=%-3d %,12.0f ops/s (%.2fx per-partition baseline)  latency %s  rented=%d cross-partition=%.0f%% aborted=%d %s%n",
+                    partitionCount, throughput, throughput / baseline, store.latency().summary("us", 1_000.0), processed,
+                    100.0 * store.crossPartitionRentals() / Math.max(1, store.count(RentalStatus.PROCESSED)
+                            + store.count(RentalStatus.ALREADY_RENTED) + store.count(RentalStatus.MOVIE_NOT_FOUND)),
+                    store.abortedRentals(), problem == null ? "OK" : "INCONSISTENT: " + problem);
+        }
+    }
+
+    static void render(int[] sizes) {
+        System.setProperty("java.awt.headless", "true");
+        int steps = Integer.getInteger("rental.view.layoutSteps", 60);
+        int width = 1920;
+        int height = 1080;
+        System.out.printf("=== Graph view: Barnes-Hut layout (%d steps) and tiled rendering into a %dx%d viewport ===%n", steps, width, height);
+        System.out.printf("%10s %10s %12s %12s %12s %12s %12s %12s%n",
+                "nodes", "edges", "layout ms", "refine ms", "cold frame", "zoomed in", "warm frame", "warm fps");
+        for (int size : sizes) {
+            Dataset dataset = new Dataset(42, size, 1, 3, 0);
+            RecommendationGraph graph = new RecommendationGraph();
+            dataset.forEachFriendship(graph::addConnection);
+
+            long start = System.nanoTime();
+            GraphLayout layout = GraphLayout.capture(graph.adjacency, null);
+            layout.layOut(null, steps, 15);
+            double layoutMs = (System.nanoTime() - start) / 1e6;
+
+            java.util.SplittableRandom random = new java.util.SplittableRandom(3);
+            for (int i = 0; i < size / 100 + 1; i++) graph.addConnection(random.nextInt(size) + 1, size + 1 + random.nextInt(size / 100 + 1));
+            start = System.nanoTime();
+            GraphLayout refined = GraphLayout.capture(graph.adjacency, null);
+            refined.layOut(layout, steps, 15);
+            double refineMs = (System.nanoTime() - start) / 1e6;
+
+            GraphVisualizationPanel panel = new GraphVisualizationPanel(graph, null);
+            panel.show(refined);
+            java.awt.image.BufferedImage screen = new java.awt.image.BufferedImage(width, height, java.awt.image.BufferedImage.TYPE_INT_RGB);
+            java.awt.Graphics2D g = screen.createGraphics();
+            double coldMs = 0;
+            double zoomedMs = 0;
+            for (int round = 0; round < 3; round++) {
+                panel.resetView();
+                start = System.nanoTime();
+                panel.renderFrame(g, width, height, Long.MAX_VALUE);
+                coldMs = (System.nanoTime() - start) / 1e6;
+                for (int i = 0; i < 12; i++) panel.zoomAt(width / 2, height / 2, 1);
+                start = System.nanoTime();
+                panel.renderFrame(g, width, height, Long.MAX_VALUE);
+                zoomedMs = (System.nanoTime() - start) / 1e6;
+            }
+            int frames = 200;
+            start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                panel.pan(i % 2 == 0 ? 3 : -3, 0);
+                panel.renderFrame(g, width, height, Long.MAX_VALUE);
+            }
+            double warmMs = (System.nanoTime() - start) / 1e6 / frames;
+            g.dispose();
+            System.out.printf("%,10d %,10d %12.1f %12.1f %10.1fms %10.2fms %10.1fms %12.0f%n", refined.vertexCount,
+                    refined.edgeCount(), layoutMs, refineMs, coldMs, zoomedMs, warmMs, 1000 / warmMs);
+        }
+    }
+
+    static void importer(int[] sizes) {
+        System.out.println("=== Bulk import: line-by-line register calls vs streaming parallel importer ===");
+        for (int size : sizes) {
+            Dataset dataset = new Dataset(Long.getLong("bench.seed", 42), size, size, 6, 2);
+            java.nio.file.Path directory = java.nio.file.Paths.get(System.getProperty("java.io.tmpdir"), "rental-import-" + size);
+            try {
+                if (!java.nio.file.Files.exists(directory.resolve(BulkImporter.RENTALS))) dataset.write(directory);
+
+                resetStore();
+                long start = System.nanoTime();
+                long rows = readLines(directory.resolve(BulkImporter.CUSTOMERS), fields -> Project.registerCustomer(Integer.parseInt(fields[0]), fields[1]));
+                rows += readLines(directory.resolve(BulkImporter.MOVIES), fields -> Project.registerMovie(Integer.parseInt(fields[0]), fields[1], fields[2]));
+                rows += readLines(directory.resolve(BulkImporter.FRIENDSHIPS), fields -> Project.connectCustomers(Integer.parseInt(fields[0]), Integer.parseInt(fields[1])));
+                rows += readLines(directory.resolve(BulkImporter.RENTALS), fields -> Project.rent(new Request(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]))));
+                double lineSeconds = (System.nanoTime() - start) / 1e9;
+                int lineRentals = Project.history.size();
+                int lineGenres = Project.categoryTree.genreCount;
+                long lineConnections = Project.recommendationGraph.connectionCount();
+                System.out.printf("line-by-line: %,d rows in %.1f s, %,.0f rows/s%n", rows, lineSeconds, rows / lineSeconds);
+
+                resetStore();
+                BulkImporter.Result result = new BulkImporter(BulkImporter::printProgress).importDirectory(directory);
+                boolean consistent = result.rentals == lineRentals && Project.customerIndex.size() == size
+                        && Project.movies.size() == size && Project.categoryTree.genreCount == lineGenres
+                        && Project.recommendationGraph.connectionCount() == lineConnections;
+                System.out.printf("streaming:    %s%n  %.1fx faster, %s%n", result, lineSeconds / (result.nanos / 1e9),
+                        consistent ? "same store contents OK" : "INCONSISTENT store contents");
+            } catch (java.io.IOException e) {
+                System.out.println("Import benchmark failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private static long readLines(java.nio.file.Path file, java.util.function.Consumer<String[]> row) throws java.io.IOException {
+        long rows = 0;
+        try (java.io.BufferedReader in = java.nio.file.Files.newBufferedReader(file)) {
+            in.readLine();
+            String line;
+            while ((line = in.readLine()) != null) {
+                row.accept(line.split(","));
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    static void listing(int[] sizes) {
+        System.out.println("=== Listings: println per row (autoflush, like System.out) vs paged buffered export ===");
+        for (int size : sizes) {
+            resetStore();
+            Dataset dataset = new Dataset(Long.getLong("bench.seed", 42), size, size, 0, 0);
+            for (int i = 0; i < size; i++) {
+                Project.registerCustomer(dataset.customerId(i), dataset.customerName(i));
+                Project.registerMovie(dataset.movieId(i), dataset.movieTitle(i), dataset.movieGenre(i));
+                Project.rent(new Request(dataset.customerId(i), dataset.movieId(i)));
+            }
+            java.nio.file.Path dir = temporaryDirectory();
+            try {
+                for (Listings.View view : Listings.View.values()) {
+                    java.nio.file.Path file = dir.resolve(view.name().toLowerCase(java.util.Locale.ROOT) + ".txt");
+                    long start = System.nanoTime();
+                    try (java.io.PrintStream out = new java.io.PrintStream(new java.io.FileOutputStream(file.toFile()), true, java.nio.charset.StandardCharsets.UTF_8)) {
+                        printRows(view, out);
+                    }
+                    double printSeconds = (System.nanoTime() - start) / 1e9;
+                    long printedBytes = java.nio.file.Files.size(file);
+
+                    start = System.nanoTime();
+                    ServiceResult<Long> exported = Project.service.exportListing(view, file);
+                    double exportSeconds = (System.nanoTime() - start) / 1e9;
+                    System.out.printf("%,12d %-9s println %,8.0f ms %7.1f MB/s   export %,7.0f ms %7.1f MB/s  %5.1fx  (%,d rows, %s)%n",
+                            size, view, printSeconds * 1e3, printedBytes / 1e6 / printSeconds, exportSeconds * 1e3,
+                            java.nio.file.Files.size(file) / 1e6 / exportSeconds, printSeconds / exportSeconds, exported.value,
+                            java.nio.file.Files.size(file) == printedBytes ? "same output" : "OUTPUT DIFFERS");
+                }
+            } catch (java.io.IOException e) {
+                System.out.println("Listing benchmark failed: " + e.getMessage());
+            }
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void printRows(Listings.View view, java.io.PrintStream out) {
+        switch (view) {
+            case HISTORY:
+                for (int entry = Project.history.last(); entry >= 0; entry--) {
+                    out.println("  • Rental " + entry + ": " + Project.describeRental(entry) + " " + Project.describeDueState(entry));
+                }
+                break;
+            case MOVIES:
+                for (Movie movie : Project.movies) out.println(movie);
+                break;
+            case CUSTOMERS:
+                for (Customer current = Project.head; current != null; current = current.next) out.println(current);
+                break;
+            default:
+                for (CategoryNode node : Project.categoryTree) {
+                    if (node.movies.isEmpty()) continue;
+                    out.println("  Genre: " + node.genre);
+                    for (Movie movie : node.movies) out.println("    " + movie);
+                }
+        }
+    }
+
+    static void replay(int[] sizes) {
+        System.out.println("=== Command replay: interactive menu via Scanner vs batch runner (commands/s) ===");
+        int menuLimit = Integer.getInteger("bench.menuCommands", 100_000);
+        for (int size : sizes) {
+            java.nio.file.Path dir = temporaryDirectory();
+            try {
+                java.nio.file.Path script = dir.resolve("commands.txt");
+                java.nio.file.Path menuScript = dir.resolve("menu.txt");
+                writeCommandLog(script, menuScript, size, Math.min(size, menuLimit));
+
+                resetStore();
+                java.io.PrintStream console = System.out;
+                java.util.Scanner previous = Project.scanner;
+                int menuCommands = Math.min(size, menuLimit);
+                long start = System.nanoTime();
+                try (java.util.Scanner scanner = new java.util.Scanner(menuScript, java.nio.charset.StandardCharsets.UTF_8);
+                        java.io.PrintStream discard = new java.io.PrintStream(java.io.OutputStream.nullOutputStream(), true)) {
+                    Project.scanner = scanner;
+                    System.setOut(discard);
+                    for (int i = 0; i < menuCommands; i++) {
+                        Project.checkpointIfDue();
+                        Project.showMenu();
+                        Project.handleChoice(Project.getIntInput("Enter choice: "));
+                    }
+                } finally {
+                    System.setOut(console);
+                    Project.scanner = previous;
+                }
+                double menuRate = menuCommands / ((System.nanoTime() - start) / 1e9);
+                String menuState = storeFingerprint();
+
+                String[] modes = {"sequential", "pipelined"};
+                double[] rates = new double[modes.length];
+                String[] states = new String[modes.length];
+                BatchRunner.Summary summary = null;
+                for (int m = 0; m < modes.length; m++) {
+                    resetStore();
+                    try (java.io.InputStream in = java.nio.file.Files.newInputStream(script);
+                            java.io.Writer out = java.nio.file.Files.newBufferedWriter(dir.resolve(modes[m] + ".out"))) {
+                        summary = new BatchRunner(Project.service, m == 1, false).run(in, out);
+                    }
+                    rates[m] = summary.commands / (summary.nanos / 1e9);
+                    states[m] = storeFingerprint();
+                }
+                boolean consistent = states[0].equals(states[1]) && java.util.Arrays.equals(
+                        java.nio.file.Files.readAllBytes(dir.resolve("sequential.out")), java.nio.file.Files.readAllBytes(dir.resolve("pipelined.out")));
+                System.out.printf("%,12d commands  menu %,10.0f/s (first %,d)  batch %,10.0f/s  pipelined %,10.0f/s  %6.1fx  (%,d errors, %s)%n",
+                        size, menuRate, menuCommands, rates[0], rates[1], rates[0] / menuRate, summary.errors,
+                        consistent ? "consistent" : "INCONSISTENT");
+                if (menuCommands == size && !menuState.equals(states[0])) System.out.println("  menu replay state differs: " + menuState + " vs " + states[0]);
+            } catch (java.io.IOException e) {
+                System.out.println("Replay benchmark failed: " + e.getMessage());
+            }
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void writeCommandLog(java.nio.file.Path script, java.nio.file.Path menuScript, int size, int menuCommands) throws java.io.IOException {
+        java.util.Random random = new java.util.Random(Long.getLong("bench.seed", 42));
+        int customers = Math.max(1, size / 20);
+        int titles = Math.max(1, size / 20);
+        try (java.io.Writer out = java.nio.file.Files.newBufferedWriter(script);
+                java.io.Writer menu = java.nio.file.Files.newBufferedWriter(menuScript)) {
+            out.write("# generated replay log: " + size + " commands\n");
+            for (int i = 0; i < size; i++) {
+                String command;
+                String menuInput;
+                int roll = random.nextInt(100);
+                if (i < customers) {
+                    command = "CUSTOMER " + i + " Customer " + i;
+                    menuInput = "1\n" + i + "\nCustomer " + i;
+                } else if (i < customers + titles) {
+                    int id = i - customers;
+                    String genre = "Genre" + (id % 24);
+                    command = "MOVIE " + id + " " + genre + " Movie " + id;
+                    menuInput = "2\n" + id + "\nMovie " + id + "\n" + genre;
+                } else if (roll < 10) {
+                    int a = random.nextInt(customers);
+                    int b = random.nextInt(customers);
+                    command = "CONNECT " + a + " " + b;
+                    menuInput = "8\n" + a + "\n" + b;
+                } else if (roll < 50) {
+                    int customer = random.nextInt(customers);
+                    int movie = random.nextInt(titles);
+                    command = "ENQUEUE " + customer + " " + movie;
+                    menuInput = "3\n" + customer + "\n" + movie;
+                } else if (roll < 80) {
+                    command = "PROCESS";
+                    menuInput = "4";
+                } else if (roll < 95) {
+                    int movie = random.nextInt(titles);
+                    command = "RETURN " + movie;
+                    menuInput = "20\n" + movie;
+                } else {
+                    int movie = random.nextInt(titles);
+                    command = "COPIES " + movie + " 1";
+                    menuInput = "22\n" + movie + "\n1";
+                }
+                out.write(command);
+                out.write('\n');
+                if (i < menuCommands) {
+                    menu.write(menuInput);
+                    menu.write('\n');
+                }
+            }
+        }
+    }
+
+    private static String storeFingerprint() {
+        synchronized (Project.history) {
+            return Project.customerIndex.size() + " customers, " + Project.movieIndex.size() + " movies, "
+                    + Project.history.size() + " rentals, " + Project.history.activeCount() + " active, "
+                    + Project.queue.size() + " queued, " + Project.recommendationGraph.connectionCount() + " connections";
+        }
+    }
+
+    static void memory(int[] sizes) {
+        System.out.println("=== Catalog heap per movie: String fields vs pooled titles and genre ordinals (bytes/movie) ===");
+        System.out.printf("%12s %12s %12s %10s %10s %10s %10s %12s%n", "movies", "strings", "pooled", "pool",
+                "index", "genres", "search", "store MB");
+        for (int size : sizes) {
+            resetStore();
+            Dataset dataset = new Dataset(Long.getLong("bench.seed", 42), 1, size, 0, 0);
+            long heapBefore = usedHeap();
+            StringFieldMovie[] legacy = new StringFieldMovie[size];
+            for (int i = 0; i < size; i++) {
+                legacy[i] = new StringFieldMovie(dataset.movieId(i), dataset.movieTitle(i), new String(dataset.movieGenre(i)));
+            }
+            long legacyHeap = usedHeap() - heapBefore;
+            java.lang.ref.Reference.reachabilityFence(legacy);
+            legacy = null;
+
+            long poolBefore = Project.strings.footprint();
+            heapBefore = usedHeap();
+            java.util.ArrayList<Movie> catalog = new java.util.ArrayList<>(size);
+            for (int i = 0; i < size; i++) catalog.add(new Movie(dataset.movieId(i), dataset.movieTitle(i), dataset.movieGenre(i)));
+            long pooledHeap = usedHeap() - heapBefore;
+            long poolBytes = Project.strings.footprint() - poolBefore;
+
+            heapBefore = usedHeap();
+            Project.movieIndex = new IntObjectMap<>(size);
+            for (Movie movie : catalog) Project.movieIndex.put(movie.id, movie);
+            long indexHeap = usedHeap() - heapBefore;
+
+            heapBefore = usedHeap();
+            Project.categoryTree.addMovies(catalog);
+            long treeHeap = usedHeap() - heapBefore;
+
+            heapBefore = usedHeap();
+            for (Movie movie : catalog) Project.movieSearch.add(movie);
+            long searchHeap = usedHeap() - heapBefore;
+
+            String prefix = dataset.movieTitle(0).substring(0, 3);
+            long start = System.nanoTime();
+            int matches = Project.movieSearch.query().titleStartsWith(prefix).count();
+            double firstPrefix = (System.nanoTime() - start) / 1e6;
+            double prefixQuery = measure(20, i -> Project.movieSearch.query().titleStartsWith(prefix).count()) / 1e6;
+
+            long store = pooledHeap + indexHeap + treeHeap + searchHeap;
+            System.out.printf("%,12d %12.1f %12.1f %10.1f %10.1f %10.1f %10.1f %,12d%n", size,
+                    legacyHeap / (double) size, pooledHeap / (double) size, poolBytes / (double) size,
+                    indexHeap / (double) size, treeHeap / (double) size, searchHeap / (double) size, store >> 20);
+            System.out.printf("  %d genres, %,d pooled strings in %,d MB; prefix '%s' matches %,d titles in %.1f ms (%.0f ms including the first sort)%n",
+                    Project.genres.size(), Project.strings.size(), Project.strings.bytes() >> 20, prefix, matches,
+                    prefixQuery, firstPrefix);
+            sink = catalog;
+        }
+    }
+
+    private static final class StringFieldMovie {
+        final int id;
+        final String title;
+        final String genre;
+        volatile int copies = 1;
+        volatile int available = 1;
+        Object waitlist;
+        int slot = -1;
+
+        StringFieldMovie(int id, String title, String genre) {
+            this.id = id;
+            this.title = title;
+            this.genre = genre;
+        }
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static java.nio.file.Path temporaryDirectory() {
+        try {
+            return java.nio.file.Files.createTempDirectory("rental-bench");
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    static void deleteRecursively(java.nio.file.Path dir) {
+        try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.walk(dir)) {
+            files.sorted(java.util.Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (java.io.IOException e) {
+            System.out.println("Could not delete " + dir);
+        }
+    }
+
+    static void populateStore(int customers, int titles) {
+        resetStore();
+        for (int id = 0; id < customers; id++) {
+            Project.customerIndex.put(id, new Customer(id, "c" + id));
+        }
+        for (int id = 0; id < titles; id++) {
+            Movie movie = new Movie(id, "m" + id, "g" + (id % 64));
+            Project.movies.add(movie);
+            Project.movieIndex.put(id, movie);
+        }
+    }
+
+    static void resetStore() {
+        Project.strings = new StringPool();
+        Project.genres = new GenreDictionary();
+        Project.head = null;
+        Project.movies = new java.util.ArrayList<>();
+        Project.customerIndex = new IntObjectMap<>();
+        Project.movieIndex = new IntObjectMap<>();
+        Project.queue = new java.util.LinkedList<>();
+        Project.history = new RentalLedger();
+        Project.categoryTree = new MovieCategoryTree();
+        Project.recommendationGraph = new RecommendationGraph();
+        Project.movieSearch = new MovieQueryIndex();
+        Project.graphAnalytics = new GraphAnalytics(Project.recommendationGraph);
+        Project.recommender = new RecommendationEngine(Project.recommendationGraph, Project.history, Project.graphAnalytics);
+        Project.journal = null;
+        Project.dueDates = new DueScheduler();
+        Project.waitlisted = new java.util.concurrent.atomic.LongAdder();
+        Project.transactions = new TransactionLog(Integer.getInteger("rental.undoRecords", 1 << 20));
+    }
+
+    interface Operation {
+        Object run(int iteration);
+    }
+
+    static double measure(int ops, Operation operation) {
+        int warmup = Math.max(1, ops / 10);
+        for (int i = 0; i < warmup; i++) sink = operation.run(i);
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) sink = operation.run(i);
+        return (System.nanoTime() - start) / (double) ops;
+    }
+
+    static int[] parseSizes(String[] args, int[] defaults) {
+        if (args.length <= 1) return defaults;
+        int[] sizes = new int[args.length - 1];
+        for (int i = 1; i < args.length; i++) sizes[i - 1] = Integer.parseInt(args[i].replace("_", ""));
+        return sizes;
+    }
+}
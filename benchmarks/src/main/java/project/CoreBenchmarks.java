@@ -0,0 +1,113 @@
+package project;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class CoreBenchmarks {
+    private static final int PROBES = 1 << 16;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private final int[] customerIds = new int[PROBES];
+    private final int[] movieIds = new int[PROBES];
+    private int probe;
+    private int newMovieId;
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void load() {
+        Benchmarks.resetStore();
+        Dataset dataset = Dataset.ofSize(size);
+        dataset.load();
+        Project.graphAnalytics.recomputeAll();
+        Project.transactions.clear();
+        java.util.SplittableRandom random = new java.util.SplittableRandom(dataset.seed);
+        for (int i = 0; i < PROBES; i++) {
+            customerIds[i] = dataset.customerId(random.nextInt(dataset.customers));
+            movieIds[i] = dataset.movieId(random.nextInt(dataset.movies));
+        }
+        newMovieId = dataset.movieId(dataset.movies);
+    }
+
+    private int next() {
+        return probe = (probe + 1) & (PROBES - 1);
+    }
+
+    @Benchmark
+    public Object findCustomer() {
+        return Project.findCustomer(customerIds[next()]);
+    }
+
+    @Benchmark
+    public Object findMovie() {
+        return Project.findMovie(movieIds[next()]);
+    }
+
+    @Benchmark
+    public Object addMovie() {
+        int i = next();
+        Movie movie = new Movie(newMovieId, "t", Dataset.GENRES[i % Dataset.GENRES.length]);
+        Project.categoryTree.addMovie(movie);
+        Project.categoryTree.removeMovie(movie);
+        return movie;
+    }
+
+    @Benchmark
+    public boolean addConnection() {
+        int i = next();
+        int first = customerIds[i];
+        int second = customerIds[(i * 7 + 3) & (PROBES - 1)];
+        boolean added = Project.recommendationGraph.addConnection(first, second);
+        if (added) Project.recommendationGraph.removeConnection(first, second);
+        return added;
+    }
+
+    @Benchmark
+    public Object processRequest() {
+        int i = next();
+        Project.service.enqueueRental(customerIds[i], movieIds[i]);
+        ServiceResult<RentalStatus> processed = Project.service.processRequest();
+        Project.service.undo();
+        Project.service.undo();
+        return processed;
+    }
+
+    @Benchmark
+    public Object undo() {
+        int i = next();
+        ServiceResult<RentalStatus> rented = Project.service.rent(customerIds[i], movieIds[i]);
+        return rented.value == RentalStatus.PROCESSED ? Project.service.undo() : rented;
+    }
+
+    @Benchmark
+    public Object recommendations() {
+        return Project.service.recommendations(customerIds[next()], 10);
+    }
+}
@@ -0,0 +1,419 @@
+package project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+class BatchRunner {
+    static final byte PING = 0;
+    static final byte CUSTOMER = 1;
+    static final byte MOVIE = 2;
+    static final byte ENQUEUE = 3;
+    static final byte PROCESS = 4;
+    static final byte RENT = 5;
+    static final byte RETURN = 6;
+    static final byte COPIES = 7;
+    static final byte UNDO = 8;
+    static final byte REDO = 9;
+    static final byte CONNECT = 10;
+    static final byte RECOMMEND = 11;
+    static final byte METRICS = 12;
+    static final byte PENDING = 13;
+    static final byte LIST = 14;
+    static final byte UNKNOWN = -1;
+    static final byte MALFORMED = -2;
+
+    private static final byte[][] KEYWORDS = keywords("PING", "CUSTOMER", "MOVIE", "ENQUEUE", "PROCESS", "RENT", "RETURN",
+            "COPIES", "UNDO", "REDO", "CONNECT", "RECOMMEND", "METRICS", "PENDING", "LIST");
+    private static final int READ_BYTES = 1 << 20;
+    private static final int BLOCK_COMMANDS = 4096;
+    private static final Command[] END = new Command[0];
+
+    private final RentalService service;
+    private final boolean pipeline;
+    private final boolean errorsOnly;
+
+    BatchRunner(RentalService service, boolean pipeline, boolean errorsOnly) {
+        this.service = service;
+        this.pipeline = pipeline;
+        this.errorsOnly = errorsOnly;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean pipeline = false;
+        boolean errorsOnly = false;
+        String output = null;
+        String input = "-";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--pipeline": pipeline = true; break;
+                case "--errors-only": errorsOnly = true; break;
+                default:
+                    if (args[i].equals("--output") && i + 1 < args.length) {
+                        output = args[++i];
+                        continue;
+                    }
+                    if (args[i].startsWith("--")) {
+                        System.out.println("Usage: BatchRunner [--pipeline] [--errors-only] [--output file] [commands-file|-]");
+                        return;
+                    }
+                    input = args[i];
+            }
+        }
+        Project.openCatalog();
+        Project.openJournal();
+        try (InputStream in = input.equals("-") ? System.in : Files.newInputStream(Paths.get(input));
+                Writer out = output == null ? new java.io.OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                        : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+            Summary summary = new BatchRunner(Project.service, pipeline, errorsOnly).run(in, out);
+            out.flush();
+            System.err.println(summary);
+        } finally {
+            Project.closeJournal();
+        }
+    }
+
+    Summary run(InputStream in, Writer out) throws IOException {
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        Writer buffered = out instanceof java.io.BufferedWriter ? out : new java.io.BufferedWriter(out, 1 << 16);
+        if (pipeline) {
+            runPipelined(in, buffered, summary);
+        } else {
+            Reader reader = new Reader(in);
+            Command[] block;
+            while ((block = reader.nextBlock()) != END) execute(block, buffered, summary);
+        }
+        buffered.flush();
+        summary.nanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private void runPipelined(InputStream in, Writer out, Summary summary) throws IOException {
+        java.util.concurrent.ArrayBlockingQueue<Command[]> parsed = new java.util.concurrent.ArrayBlockingQueue<>(8);
+        Throwable[] failure = new Throwable[1];
+        Thread parser = new Thread(() -> {
+            Reader reader = new Reader(in);
+            Command[] block = null;
+            try {
+                do {
+                    block = reader.nextBlock();
+                    parsed.put(block);
+                } while (block != END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure[0] = e;
+            } finally {
+                if (block != END) {
+                    try {
+                        parsed.put(END);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "batch-parser");
+        parser.setDaemon(true);
+        parser.start();
+        try {
+            Command[] block;
+            while ((block = parsed.take()) != END) execute(block, out, summary);
+            parser.join();
+        } catch (InterruptedException e) {
+            parser.interrupt();
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException("Batch interrupted");
+        } finally {
+            if (parser.isAlive()) parser.interrupt();
+        }
+        Throwable thrown = failure[0];
+        if (thrown instanceof IOException) throw (IOException) thrown;
+        if (thrown instanceof RuntimeException) throw (RuntimeException) thrown;
+        if (thrown instanceof Error) throw (Error) thrown;
+        if (thrown != null) throw new IOException(thrown);
+    }
+
+    private void execute(Command[] block, Writer out, Summary summary) throws IOException {
+        for (Command command : block) {
+            if (command == null) break;
+            String result = execute(service, command);
+            boolean failed = result.startsWith("ERR");
+            summary.commands++;
+            if (failed) summary.errors++;
+            if (failed || !errorsOnly) out.append(result).append('\n');
+        }
+    }
+
+    static String execute(RentalService service, Command command) {
+        switch (command.op) {
+            case PING: return "OK PONG";
+            case CUSTOMER: return service.addCustomer(command.first, command.text).toString();
+            case MOVIE: return service.addMovie(command.first, command.text, command.word).toString();
+            case ENQUEUE: return service.enqueueRental(command.first, command.second).toString();
+            case PROCESS: return service.processRequest().toString();
+            case RENT: return service.rent(command.first, command.second).toString();
+            case RETURN: return service.returnMovie(command.first).toString();
+            case COPIES: return service.addCopies(command.first, command.second).toString();
+            case UNDO: return command.arguments > 0 ? service.undoRental(command.first).toString() : service.undo().toString();
+            case REDO: return service.redo().toString();
+            case CONNECT: return service.connect(command.first, command.second).toString();
+            case RECOMMEND: {
+                ServiceResult<java.util.List<Recommendation>> result = service.recommendations(command.first,
+                        command.arguments > 1 ? command.second : 10);
+                if (!result.ok) return result.toString();
+                StringBuilder out = new StringBuilder("OK ").append(result.value.size());
+                for (Recommendation recommendation : result.value) out.append(" | ").append(recommendation);
+                return out.toString();
+            }
+            case METRICS: return "OK " + Metrics.dump(" ");
+            case PENDING: return "OK " + service.pendingRequests();
+            case LIST: {
+                int pageSize = command.arguments > 1 ? Math.min(command.second, Listings.EXPORT_PAGE_SIZE) : Listings.PAGE_SIZE;
+                StringBuilder rows = new StringBuilder();
+                ServiceResult<Listings.Page> page = service.list(command.view, command.text, pageSize, rows);
+                if (!page.ok) return page.toString();
+                if (rows.length() > 0) rows.setLength(rows.length() - 1);
+                return "OK " + page.value.rows + " " + (page.value.next != null ? page.value.next : "END")
+                        + (page.value.rows > 0 ? "\n" + rows : "");
+            }
+            case UNKNOWN: return "ERR Unknown command: " + command.word;
+            default: return "ERR Malformed command: " + command.text;
+        }
+    }
+
+    static Command parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        Command command = new Command();
+        new LineParser(bytes, bytes.length).parse(command);
+        return command;
+    }
+
+    static final class Command {
+        byte op;
+        int first;
+        int second;
+        int arguments;
+        String word;
+        String text;
+        Listings.View view;
+    }
+
+    static final class Summary {
+        long commands;
+        long errors;
+        long nanos;
+
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("Executed %,d commands (%,d errors) in %.2f s, %,.0f commands/s", commands, errors, seconds,
+                    commands / Math.max(seconds, 1e-9));
+        }
+    }
+
+    private static final class Reader {
+        private final InputStream in;
+        private byte[] buffer = new byte[READ_BYTES];
+        private int start;
+        private int limit;
+        private boolean eof;
+
+        Reader(InputStream in) {
+            this.in = in;
+        }
+
+        Command[] nextBlock() throws IOException {
+            Command[] block = new Command[BLOCK_COMMANDS];
+            int count = 0;
+            while (count < BLOCK_COMMANDS) {
+                int lineEnd = indexOfNewline();
+                if (lineEnd < 0) {
+                    if (eof) {
+                        if (start == limit) break;
+                        lineEnd = limit;
+                    } else {
+                        fill();
+                        continue;
+                    }
+                }
+                LineParser line = new LineParser(buffer, lineEnd, start);
+                start = Math.min(lineEnd + 1, limit);
+                if (line.isBlank()) continue;
+                Command command = new Command();
+                line.parse(command);
+                block[count++] = command;
+            }
+            return count == 0 ? END : block;
+        }
+
+        private int indexOfNewline() {
+            for (int i = start; i < limit; i++) {
+                if (buffer[i] == '\n') return i;
+            }
+            return -1;
+        }
+
+        private void fill() throws IOException {
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, limit - start);
+                limit -= start;
+                start = 0;
+            }
+            if (limit == buffer.length) buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+    }
+
+    private static final class LineParser {
+        private final byte[] data;
+        private final int from;
+        private int end;
+        private int position;
+
+        LineParser(byte[] data, int end) {
+            this(data, end, 0);
+        }
+
+        LineParser(byte[] data, int end, int from) {
+            this.data = data;
+            this.from = from;
+            this.position = from;
+            while (end > from && isSpace(data[end - 1])) end--;
+            this.end = end;
+            skipSpaces();
+        }
+
+        boolean isBlank() {
+            return position == end || data[position] == '#';
+        }
+
+        void parse(Command command) {
+            int keywordStart = position;
+            while (position < end && !isSpace(data[position])) position++;
+            int keywordEnd = position;
+            command.op = keyword(keywordStart, keywordEnd);
+            skipSpaces();
+            boolean ok;
+            switch (command.op) {
+                case CUSTOMER:
+                    ok = nextInt(command);
+                    command.text = rest();
+                    break;
+                case MOVIE:
+                    ok = nextInt(command) && position < end;
+                    command.word = word();
+                    command.text = rest();
+                    break;
+                case ENQUEUE:
+                case RENT:
+                case COPIES:
+                case CONNECT:
+                    ok = nextInt(command) && nextInt(command);
+                    break;
+                case RETURN:
+                    ok = nextInt(command);
+                    break;
+                case UNDO:
+                    ok = position == end || nextInt(command);
+                    break;
+                case RECOMMEND:
+                    ok = nextInt(command) && (position == end || nextInt(command));
+                    break;
+                case LIST:
+                    command.view = view(word());
+                    ok = command.view != null;
+                    command.arguments = 1;
+                    if (ok && position < end) ok = nextInt(command);
+                    command.text = position < end ? rest() : null;
+                    break;
+                case UNKNOWN:
+                    command.word = new String(data, keywordStart, keywordEnd - keywordStart, StandardCharsets.UTF_8);
+                    return;
+                default:
+                    ok = true;
+            }
+            if (!ok) {
+                command.op = MALFORMED;
+                command.text = new String(data, from, end - from, StandardCharsets.UTF_8).trim();
+            }
+        }
+
+        private byte keyword(int start, int stop) {
+            int length = stop - start;
+            for (int k = 0; k < KEYWORDS.length; k++) {
+                byte[] keyword = KEYWORDS[k];
+                if (keyword.length != length) continue;
+                int i = 0;
+                while (i < length && (data[start + i] & 0xDF) == keyword[i]) i++;
+                if (i == length) return (byte) k;
+            }
+            return UNKNOWN;
+        }
+
+        private boolean nextInt(Command command) {
+            int i = position;
+            boolean negative = i < end && data[i] == '-';
+            if (negative) i++;
+            long value = 0;
+            int digits = 0;
+            while (i < end && data[i] >= '0' && data[i] <= '9' && digits < 11) {
+                value = value * 10 + (data[i++] - '0');
+                digits++;
+            }
+            if (digits == 0 || (i < end && !isSpace(data[i]))) return false;
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) return false;
+            if (command.arguments++ == 0) {
+                command.first = (int) value;
+            } else {
+                command.second = (int) value;
+            }
+            position = i;
+            skipSpaces();
+            return true;
+        }
+
+        private String word() {
+            int start = position;
+            while (position < end && !isSpace(data[position])) position++;
+            String word = new String(data, start, position - start, StandardCharsets.UTF_8);
+            skipSpaces();
+            return word;
+        }
+
+        private String rest() {
+            String rest = new String(data, position, end - position, StandardCharsets.UTF_8);
+            position = end;
+            return rest;
+        }
+
+        private void skipSpaces() {
+            while (position < end && isSpace(data[position])) position++;
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+        }
+    }
+
+    private static Listings.View view(String name) {
+        for (Listings.View view : Listings.View.values()) {
+            if (view.name().equalsIgnoreCase(name)) return view;
+        }
+        return null;
+    }
+
+    private static byte[][] keywords(String... names) {
+        byte[][] keywords = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) keywords[i] = names[i].getBytes(StandardCharsets.US_ASCII);
+        return keywords;
+    }
+}
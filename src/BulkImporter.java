@@ -0,0 +1,388 @@
+package project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+class BulkImporter {
+    static final String CUSTOMERS = "customers.csv";
+    static final String MOVIES = "movies.csv";
+    static final String FRIENDSHIPS = "friendships.csv";
+    static final String RENTALS = "rentals.csv";
+
+    private static final int CHUNK_BYTES = Integer.getInteger("rental.import.chunkBytes", 4 << 20);
+    private static final long PROGRESS_INTERVAL_NANOS = 1_000_000_000L;
+
+    interface Progress {
+        void update(String file, long rows, long bytesRead, long totalBytes, long elapsedNanos);
+    }
+
+    private final int parallelism;
+    private final java.util.concurrent.ExecutorService parsers;
+    private final Progress progress;
+
+    BulkImporter(Progress progress) {
+        this(Runtime.getRuntime().availableProcessors(), progress);
+    }
+
+    BulkImporter(int parallelism, Progress progress) {
+        this.parallelism = Math.max(1, parallelism);
+        this.parsers = java.util.concurrent.Executors.newFixedThreadPool(this.parallelism, task -> {
+            Thread thread = new Thread(task, "import-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.progress = progress;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: BulkImporter <directory>  (reads " + CUSTOMERS + ", " + MOVIES + ", " + FRIENDSHIPS
+                    + ", " + RENTALS + "; set -Drental.dataDir to persist the result)");
+            return;
+        }
+        Project.openJournal();
+        ServiceResult<Result> imported = Project.service.importData(Paths.get(args[0]), BulkImporter::printProgress);
+        System.out.println(imported.message);
+        Project.closeJournal();
+    }
+
+    static void printProgress(String file, long rows, long bytesRead, long totalBytes, long elapsedNanos) {
+        System.out.printf("  %-16s %,14d rows  %5.1f%%  %,12.0f rows/s%n", file, rows,
+                totalBytes == 0 ? 100.0 : 100.0 * bytesRead / totalBytes, rows / Math.max(elapsedNanos / 1e9, 1e-9));
+    }
+
+    Result importDirectory(Path directory) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        try {
+            result.customers = stream(directory.resolve(CUSTOMERS), Kind.CUSTOMER, result);
+            result.movies = stream(directory.resolve(MOVIES), Kind.MOVIE, result);
+            result.friendships = stream(directory.resolve(FRIENDSHIPS), Kind.FRIENDSHIP, result);
+            result.rentals = stream(directory.resolve(RENTALS), Kind.RENTAL, result);
+        } finally {
+            parsers.shutdownNow();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private long stream(Path file, Kind kind, Result result) throws IOException {
+        if (!Files.exists(file)) return 0;
+        long applied = 0;
+        long rows = 0;
+        long start = System.nanoTime();
+        long lastReport = start;
+        String name = file.getFileName().toString();
+        java.util.ArrayDeque<Future<Batch>> inFlight = new java.util.ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long total = channel.size();
+            byte[] carry = new byte[0];
+            boolean first = true;
+            boolean eof = false;
+            while (!eof) {
+                byte[] chunk = new byte[Math.max(CHUNK_BYTES, carry.length * 2)];
+                System.arraycopy(carry, 0, chunk, 0, carry.length);
+                ByteBuffer buffer = ByteBuffer.wrap(chunk, carry.length, chunk.length - carry.length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                int length = buffer.position();
+                int end = eof ? length : lastLineEnd(chunk, length);
+                carry = java.util.Arrays.copyOfRange(chunk, end, length);
+                boolean skipHeader = first;
+                if (end > 0) {
+                    first = false;
+                    inFlight.add(parsers.submit(() -> parse(kind, chunk, end, skipHeader)));
+                }
+                while (inFlight.size() >= 2 * parallelism || (eof && !inFlight.isEmpty())) {
+                    Batch batch = await(inFlight.poll());
+                    rows += batch.rows + batch.malformed;
+                    applied += apply(kind, batch);
+                }
+                long now = System.nanoTime();
+                if (progress != null && !eof && now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                    progress.update(name, rows, channel.position() - carry.length, total, now - start);
+                    lastReport = now;
+                }
+            }
+            result.bytes += total;
+            if (progress != null) progress.update(name, rows, total, total, System.nanoTime() - start);
+        } finally {
+            for (Future<Batch> pending : inFlight) pending.cancel(true);
+        }
+        result.skipped += rows - applied;
+        return applied;
+    }
+
+    private static Batch await(Future<Batch> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not parse import chunk", e.getCause());
+        }
+    }
+
+    private static int lastLineEnd(byte[] chunk, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (chunk[i] == '\n') return i + 1;
+        }
+        return 0;
+    }
+
+    private static long apply(Kind kind, Batch batch) {
+        switch (kind) {
+            case CUSTOMER: return Project.bulkAddCustomers(batch.first, batch::intern, batch.rows);
+            case MOVIE: return Project.bulkAddMovies(batch.first, batch::intern, batch.genres, batch.rows);
+            case FRIENDSHIP: return Project.bulkConnect(batch.first, batch.second, batch.rows);
+            default: return Project.bulkRent(batch.first, batch.second, batch.rows);
+        }
+    }
+
+    private Batch parse(Kind kind, byte[] data, int end, boolean skipHeader) {
+        LineParser parser = new LineParser(data, end);
+        if (skipHeader && end > 0 && !isDigit(data[0]) && data[0] != '-') parser.skipLine();
+        Batch batch = new Batch(kind, data, parser.estimateLines());
+        while (parser.hasMore()) {
+            boolean ok;
+            int first = parser.nextInt();
+            ok = parser.valid;
+            switch (kind) {
+                case CUSTOMER:
+                    parser.nextText();
+                    ok &= parser.valid && parser.atLineEnd();
+                    if (ok) batch.addText(first, parser, -1);
+                    break;
+                case MOVIE:
+                    parser.nextText();
+                    int genre = parser.valid ? parser.nextGenre() : -1;
+                    ok &= parser.valid && parser.atLineEnd();
+                    if (ok) batch.addText(first, parser, genre);
+                    break;
+                default:
+                    int second = parser.nextInt();
+                    ok &= parser.valid && parser.atLineEnd();
+                    if (ok) batch.addPair(first, second);
+            }
+            if (!ok) batch.malformed++;
+            parser.skipLine();
+        }
+        return batch;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    enum Kind {
+        CUSTOMER, MOVIE, FRIENDSHIP, RENTAL
+    }
+
+    static class Result {
+        long customers;
+        long movies;
+        long friendships;
+        long rentals;
+        long skipped;
+        long bytes;
+        long nanos;
+
+        long rows() {
+            return customers + movies + friendships + rentals + skipped;
+        }
+
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("Imported %,d customers, %,d movies, %,d friendships and %,d rentals (%,d rows skipped) "
+                    + "in %.1f s, %,.0f rows/s, %.1f MB/s", customers, movies, friendships, rentals, skipped, seconds,
+                    rows() / Math.max(seconds, 1e-9), bytes / 1e6 / Math.max(seconds, 1e-9));
+        }
+    }
+
+    private static final class Batch {
+        private final byte[] data;
+        int rows;
+        int malformed;
+        int[] first;
+        int[] second;
+        int[] textFrom;
+        int[] textTo;
+        String[] quoted;
+        int[] genres;
+
+        Batch(Kind kind, byte[] data, int capacity) {
+            this.data = data;
+            first = new int[capacity];
+            if (kind == Kind.FRIENDSHIP || kind == Kind.RENTAL) {
+                second = new int[capacity];
+            } else {
+                textFrom = new int[capacity];
+                textTo = new int[capacity];
+                if (kind == Kind.MOVIE) genres = new int[capacity];
+            }
+        }
+
+        void addPair(int a, int b) {
+            first[rows] = a;
+            second[rows++] = b;
+        }
+
+        void addText(int id, LineParser parser, int genre) {
+            first[rows] = id;
+            textFrom[rows] = parser.textFrom;
+            textTo[rows] = parser.textTo;
+            if (parser.quotedText != null) {
+                if (quoted == null) quoted = new String[first.length];
+                quoted[rows] = parser.quotedText;
+            }
+            if (genres != null) genres[rows] = genre;
+            rows++;
+        }
+
+        int intern(int row) {
+            if (quoted != null && quoted[row] != null) return Project.strings.intern(quoted[row]);
+            return Project.strings.intern(data, textFrom[row], textTo[row]);
+        }
+    }
+
+    private static final class LineParser {
+        private static final int GENRE_SLOTS = 64;
+
+        private final byte[] data;
+        private final int end;
+        private int position;
+        boolean valid;
+        int textFrom;
+        int textTo;
+        String quotedText;
+
+        private final int[] genreOrdinals = new int[GENRE_SLOTS];
+        private final byte[][] genreBytes = new byte[GENRE_SLOTS][];
+        private int genreCount;
+
+        LineParser(byte[] data, int end) {
+            this.data = data;
+            this.end = end;
+        }
+
+        int estimateLines() {
+            int lines = 0;
+            for (int i = position; i < end; i++) {
+                if (data[i] == '\n') lines++;
+            }
+            return lines + 1;
+        }
+
+        boolean hasMore() {
+            while (position < end && (data[position] == '\n' || data[position] == '\r')) position++;
+            return position < end;
+        }
+
+        boolean atLineEnd() {
+            return position >= end || data[position] == '\n' || data[position] == '\r';
+        }
+
+        void skipLine() {
+            while (position < end && data[position] != '\n') position++;
+            if (position < end) position++;
+        }
+
+        int nextInt() {
+            int i = position;
+            boolean negative = i < end && data[i] == '-';
+            if (negative) i++;
+            int digits = 0;
+            long value = 0;
+            while (i < end && isDigit(data[i]) && digits < 11) {
+                value = value * 10 + (data[i++] - '0');
+                digits++;
+            }
+            value = negative ? -value : value;
+            valid = digits > 0 && digits < 11 && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+            position = i;
+            if (position < end && data[position] == ',') position++;
+            return (int) value;
+        }
+
+        void nextText() {
+            if (position < end && data[position] == '"') {
+                quotedText = nextQuoted();
+                return;
+            }
+            quotedText = null;
+            textFrom = position;
+            while (position < end && data[position] != ',' && data[position] != '\n' && data[position] != '\r') position++;
+            textTo = position;
+            valid = true;
+            if (position < end && data[position] == ',') position++;
+        }
+
+        int nextGenre() {
+            if (position < end && data[position] == '"') return Project.genres.ordinal(nextQuoted());
+            int from = position;
+            int hash = 0;
+            while (position < end && data[position] != ',' && data[position] != '\n' && data[position] != '\r') {
+                hash = 31 * hash + data[position++];
+            }
+            valid = true;
+            int to = position;
+            if (position < end && data[position] == ',') position++;
+            int slot = hash & (GENRE_SLOTS - 1);
+            for (int probe = 0; probe < GENRE_SLOTS && genreBytes[slot] != null; probe++) {
+                if (sameBytes(genreBytes[slot], from, to)) return genreOrdinals[slot];
+                slot = (slot + 1) & (GENRE_SLOTS - 1);
+            }
+            int genre = Project.genres.ordinal(new String(data, from, to - from, StandardCharsets.UTF_8));
+            if (genreCount < GENRE_SLOTS / 2) {
+                genreOrdinals[slot] = genre;
+                genreBytes[slot] = java.util.Arrays.copyOfRange(data, from, to);
+                genreCount++;
+            }
+            return genre;
+        }
+
+        private boolean sameBytes(byte[] key, int from, int to) {
+            if (key.length != to - from) return false;
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != data[from + i]) return false;
+            }
+            return true;
+        }
+
+        private String nextQuoted() {
+            StringBuilder text = new StringBuilder();
+            int from = ++position;
+            valid = false;
+            while (position < end && data[position] != '\n') {
+                if (data[position] == '"') {
+                    text.append(new String(data, from, position - from, StandardCharsets.UTF_8));
+                    if (position + 1 < end && data[position + 1] == '"') {
+                        text.append('"');
+                        position += 2;
+                        from = position;
+                        continue;
+                    }
+                    position++;
+                    valid = true;
+                    break;
+                }
+                position++;
+            }
+            if (position < end && data[position] == ',') position++;
+            return text.toString();
+        }
+    }
+}
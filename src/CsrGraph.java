@@ -0,0 +1,218 @@
+package project;
+
+class CsrGraph {
+    private static final int MIN_MERGE_THRESHOLD = 1024;
+
+    private final IntIntMap vertexOf = new IntIntMap();
+    private int[] ids = new int[16];
+    private int vertexCount;
+
+    private int[] offsets = new int[1];
+    private int[] neighbours = new int[0];
+    private int mergedVertices;
+
+    private int[] deltaHead = new int[16];
+    private int[] deltaNext = new int[64];
+    private int[] deltaTarget = new int[64];
+    private int deltaCount;
+    private final java.util.BitSet removed = new java.util.BitSet();
+    private int removedCount;
+    private long edgeCount;
+    private long modifications;
+
+    CsrGraph() {
+        java.util.Arrays.fill(deltaHead, -1);
+    }
+
+    int vertexCount() {
+        return vertexCount;
+    }
+
+    long edgeCount() {
+        return edgeCount;
+    }
+
+    long modifications() {
+        return modifications;
+    }
+
+    int pendingEdges() {
+        return deltaCount;
+    }
+
+    int id(int vertex) {
+        return ids[vertex];
+    }
+
+    int vertex(int id) {
+        return vertexOf.get(id, -1);
+    }
+
+    boolean contains(int id) {
+        return vertexOf.containsKey(id);
+    }
+
+    int addVertex(int id) {
+        int vertex = vertexOf.get(id, -1);
+        if (vertex >= 0) return vertex;
+        if (vertexCount == ids.length) {
+            ids = java.util.Arrays.copyOf(ids, vertexCount * 2);
+            int oldLength = deltaHead.length;
+            deltaHead = java.util.Arrays.copyOf(deltaHead, vertexCount * 2);
+            java.util.Arrays.fill(deltaHead, oldLength, deltaHead.length, -1);
+        }
+        vertex = vertexCount++;
+        modifications++;
+        ids[vertex] = id;
+        vertexOf.put(id, vertex);
+        return vertex;
+    }
+
+    boolean addEdge(int id1, int id2) {
+        int from = addVertex(id1);
+        int to = addVertex(id2);
+        if (hasEdge(from, to)) return false;
+        if (deltaCount == deltaTarget.length) {
+            deltaNext = java.util.Arrays.copyOf(deltaNext, deltaCount * 2);
+            deltaTarget = java.util.Arrays.copyOf(deltaTarget, deltaCount * 2);
+        }
+        deltaTarget[deltaCount] = to;
+        deltaNext[deltaCount] = deltaHead[from];
+        deltaHead[from] = deltaCount++;
+        edgeCount++;
+        modifications++;
+        if (deltaCount >= Math.max(MIN_MERGE_THRESHOLD, edgeCount / 8)) merge();
+        return true;
+    }
+
+    boolean removeEdge(int id1, int id2) {
+        int from = vertex(id1);
+        int to = vertex(id2);
+        if (from < 0 || to < 0) return false;
+        for (int e = deltaHead[from], previous = -1; e >= 0; previous = e, e = deltaNext[e]) {
+            if (deltaTarget[e] != to) continue;
+            if (previous < 0) {
+                deltaHead[from] = deltaNext[e];
+            } else {
+                deltaNext[previous] = deltaNext[e];
+            }
+            edgeCount--;
+            modifications++;
+            return true;
+        }
+        int position = mergedPosition(from, to);
+        if (position < 0) return false;
+        removed.set(position);
+        removedCount++;
+        edgeCount--;
+        modifications++;
+        if (removedCount >= Math.max(MIN_MERGE_THRESHOLD, edgeCount / 8)) merge();
+        return true;
+    }
+
+    private int mergedPosition(int fromVertex, int toVertex) {
+        if (fromVertex >= mergedVertices) return -1;
+        int position = java.util.Arrays.binarySearch(neighbours, offsets[fromVertex], offsets[fromVertex + 1], toVertex);
+        return position >= 0 && (removedCount == 0 || !removed.get(position)) ? position : -1;
+    }
+
+    boolean hasEdge(int fromVertex, int toVertex) {
+        if (mergedPosition(fromVertex, toVertex) >= 0) return true;
+        for (int e = deltaHead[fromVertex]; e >= 0; e = deltaNext[e]) {
+            if (deltaTarget[e] == toVertex) return true;
+        }
+        return false;
+    }
+
+    int degree(int vertex) {
+        int degree = 0;
+        if (vertex < mergedVertices) {
+            degree = offsets[vertex + 1] - offsets[vertex];
+            for (int p = removed.nextSetBit(offsets[vertex]); p >= 0 && p < offsets[vertex + 1]; p = removed.nextSetBit(p + 1)) degree--;
+        }
+        for (int e = deltaHead[vertex]; e >= 0; e = deltaNext[e]) degree++;
+        return degree;
+    }
+
+    void merge() {
+        if (deltaCount == 0 && mergedVertices == vertexCount && removedCount == 0) return;
+        int[] newOffsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            newOffsets[v + 1] = newOffsets[v] + degree(v);
+        }
+        int[] newNeighbours = new int[newOffsets[vertexCount]];
+        for (int v = 0; v < vertexCount; v++) {
+            int position = newOffsets[v];
+            if (v < mergedVertices && removedCount == 0) {
+                int length = offsets[v + 1] - offsets[v];
+                System.arraycopy(neighbours, offsets[v], newNeighbours, position, length);
+                position += length;
+            } else if (v < mergedVertices) {
+                for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+                    if (!removed.get(p)) newNeighbours[position++] = neighbours[p];
+                }
+            }
+            for (int e = deltaHead[v]; e >= 0; e = deltaNext[e]) {
+                newNeighbours[position++] = deltaTarget[e];
+            }
+            java.util.Arrays.sort(newNeighbours, newOffsets[v], position);
+            deltaHead[v] = -1;
+        }
+        offsets = newOffsets;
+        neighbours = newNeighbours;
+        mergedVertices = vertexCount;
+        deltaCount = 0;
+        removed.clear();
+        removedCount = 0;
+    }
+
+    int[] offsets() {
+        merge();
+        return offsets;
+    }
+
+    int[] targets() {
+        merge();
+        return neighbours;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    class Cursor {
+        private int position;
+        private int end;
+        private int delta;
+
+        Cursor reset(int id) {
+            int vertex = vertexOf.get(id, -1);
+            if (vertex < 0) {
+                position = end = 0;
+                delta = -1;
+            } else {
+                position = vertex < mergedVertices ? offsets[vertex] : 0;
+                end = vertex < mergedVertices ? offsets[vertex + 1] : 0;
+                delta = deltaHead[vertex];
+            }
+            return this;
+        }
+
+        boolean hasNext() {
+            while (removedCount > 0 && position < end && removed.get(position)) position++;
+            return position < end || delta >= 0;
+        }
+
+        int next() {
+            return ids[nextVertex()];
+        }
+
+        int nextVertex() {
+            while (removedCount > 0 && position < end && removed.get(position)) position++;
+            if (position < end) return neighbours[position++];
+            int vertex = deltaTarget[delta];
+            delta = deltaNext[delta];
+            return vertex;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package project;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+class Dataset {
+    static final String[] GENRES = {
+        "Drama", "Comedy", "Action", "Thriller", "Horror", "Romance", "Sci-Fi", "Documentary",
+        "Animation", "Crime", "Fantasy", "Adventure", "Mystery", "Family", "War", "Western",
+        "Musical", "History", "Biography", "Sport", "Noir", "Superhero", "Anime", "Short"
+    };
+    private static final String[] FIRST_NAMES = {
+        "Ava", "Ben", "Chloe", "Dev", "Emma", "Farah", "Gus", "Hana", "Ivan", "Jia", "Kofi", "Lena",
+        "Mateo", "Nia", "Omar", "Priya", "Quinn", "Rosa", "Sam", "Tariq", "Uma", "Vik", "Wen", "Yara"
+    };
+    private static final String[] TITLE_WORDS = {
+        "Night", "River", "Shadow", "Empire", "Last", "Silent", "Golden", "Storm", "City", "Dream",
+        "Broken", "Iron", "Lost", "Summer", "Winter", "Secret", "Wild", "Hidden", "Red", "Blue"
+    };
+
+    final long seed;
+    final int customers;
+    final int movies;
+    final int friendsPerCustomer;
+    final int rentalsPerCustomer;
+
+    Dataset(long seed, int customers, int movies, int friendsPerCustomer, int rentalsPerCustomer) {
+        this.seed = seed;
+        this.customers = customers;
+        this.movies = movies;
+        this.friendsPerCustomer = friendsPerCustomer;
+        this.rentalsPerCustomer = rentalsPerCustomer;
+    }
+
+    static Dataset ofSize(int size) {
+        return new Dataset(Long.getLong("bench.seed", 42), size, size, 5, 2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: Dataset <directory> <customers> [movies] [friendsPerCustomer] [rentalsPerCustomer] [seed]");
+            return;
+        }
+        int customers = Integer.parseInt(args[1].replace("_", ""));
+        Dataset dataset = new Dataset(args.length > 5 ? Long.parseLong(args[5]) : 42, customers,
+                args.length > 2 ? Integer.parseInt(args[2].replace("_", "")) : customers,
+                args.length > 3 ? Integer.parseInt(args[3]) : 5,
+                args.length > 4 ? Integer.parseInt(args[4]) : 2);
+        dataset.write(Paths.get(args[0]));
+        System.out.println("Wrote " + dataset + " to " + args[0]);
+    }
+
+    int customerId(int index) {
+        return index + 1;
+    }
+
+    int movieId(int index) {
+        return index + 1;
+    }
+
+    String customerName(int index) {
+        return FIRST_NAMES[index % FIRST_NAMES.length] + " " + (index / FIRST_NAMES.length + 1);
+    }
+
+    String movieTitle(int index) {
+        return TITLE_WORDS[mix(index, 1) % TITLE_WORDS.length] + " " + TITLE_WORDS[mix(index, 2) % TITLE_WORDS.length]
+                + " " + (index + 1);
+    }
+
+    String movieGenre(int index) {
+        return GENRES[skewed(mix(index, 3), GENRES.length)];
+    }
+
+    void forEachFriendship(IntPairConsumer consumer) {
+        java.util.SplittableRandom random = new java.util.SplittableRandom(seed ^ 0x5F3759DFL);
+        int neighbourhood = Math.max(2, Math.min(customers, 64));
+        for (int i = 0; i < customers; i++) {
+            for (int f = 0; f < friendsPerCustomer; f++) {
+                int friend = random.nextInt(4) == 0
+                        ? random.nextInt(customers)
+                        : (i / neighbourhood) * neighbourhood + random.nextInt(neighbourhood);
+                if (friend >= customers) friend = random.nextInt(customers);
+                if (friend != i) consumer.accept(customerId(i), customerId(friend));
+            }
+        }
+    }
+
+    void forEachRental(IntPairConsumer consumer) {
+        java.util.SplittableRandom random = new java.util.SplittableRandom(seed ^ 0x2545F491L);
+        for (int i = 0; i < customers; i++) {
+            for (int r = 0; r < rentalsPerCustomer; r++) {
+                consumer.accept(customerId(random.nextInt(customers)), movieId(skewed(random.nextInt(), movies)));
+            }
+        }
+    }
+
+    void load() {
+        for (int i = 0; i < customers; i++) Project.registerCustomer(customerId(i), customerName(i));
+        for (int i = 0; i < movies; i++) Project.registerMovie(movieId(i), movieTitle(i), movieGenre(i));
+        forEachFriendship(Project::connectCustomers);
+        forEachRental((customerId, movieId) -> Project.rent(new Request(customerId, movieId)));
+    }
+
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("customers.csv"), StandardCharsets.UTF_8)) {
+            out.write("id,name\n");
+            for (int i = 0; i < customers; i++) out.write(customerId(i) + "," + customerName(i) + "\n");
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("movies.csv"), StandardCharsets.UTF_8)) {
+            out.write("id,title,genre\n");
+            for (int i = 0; i < movies; i++) out.write(movieId(i) + "," + movieTitle(i) + "," + movieGenre(i) + "\n");
+        }
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("friendships.csv"), StandardCharsets.UTF_8)) {
+                out.write("customer1,customer2\n");
+                forEachFriendship((a, b) -> write(out, a + "," + b + "\n"));
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("rentals.csv"), StandardCharsets.UTF_8)) {
+                out.write("customer,movie\n");
+                forEachRental((customerId, movieId) -> write(out, customerId + "," + movieId + "\n"));
+            }
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public String toString() {
+        return String.format("dataset(seed=%d, %,d customers, %,d movies, %d friends and %d rentals per customer)",
+                seed, customers, movies, friendsPerCustomer, rentalsPerCustomer);
+    }
+
+    interface IntPairConsumer {
+        void accept(int a, int b);
+    }
+
+    private static void write(BufferedWriter out, String line) {
+        try {
+            out.write(line);
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    private static int skewed(int random, int bound) {
+        double u = ((random >>> 1) + 0.5) / (1L << 31);
+        return Math.min(bound - 1, (int) (bound * u * u));
+    }
+
+    private static int mix(int index, int salt) {
+        return IntObjectMap.mix(index * 31 + salt) & Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,96 @@
+package project;
+
+class DueScheduler {
+    static final byte DUE = 0;
+    static final byte RELEASE = 1;
+
+    private long[] deadlines;
+    private int[] rentalIds;
+    private byte[] kinds;
+    private int size;
+
+    interface Expiry {
+        void expired(int rentalId, long deadline, byte kind);
+    }
+
+    DueScheduler() {
+        this(64);
+    }
+
+    DueScheduler(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        deadlines = new long[capacity];
+        rentalIds = new int[capacity];
+        kinds = new byte[capacity];
+    }
+
+    void schedule(int rentalId, long deadline, byte kind) {
+        if (size == deadlines.length) {
+            int capacity = size + (size >> 1) + 1;
+            deadlines = java.util.Arrays.copyOf(deadlines, capacity);
+            rentalIds = java.util.Arrays.copyOf(rentalIds, capacity);
+            kinds = java.util.Arrays.copyOf(kinds, capacity);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (deadlines[parent] <= deadline) break;
+            move(parent, i);
+            i = parent;
+        }
+        deadlines[i] = deadline;
+        rentalIds[i] = rentalId;
+        kinds[i] = kind;
+    }
+
+    int expire(long now, Expiry expiry) {
+        int expired = 0;
+        while (size > 0 && deadlines[0] <= now) {
+            int rentalId = rentalIds[0];
+            long deadline = deadlines[0];
+            byte kind = kinds[0];
+            removeTop();
+            expiry.expired(rentalId, deadline, kind);
+            expired++;
+        }
+        return expired;
+    }
+
+    long nextDeadline() {
+        return size == 0 ? Long.MAX_VALUE : deadlines[0];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private void removeTop() {
+        int last = --size;
+        if (last == 0) return;
+        long deadline = deadlines[last];
+        int rentalId = rentalIds[last];
+        byte kind = kinds[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && deadlines[child + 1] < deadlines[child]) child++;
+            if (deadlines[child] >= deadline) break;
+            move(child, i);
+            i = child;
+        }
+        deadlines[i] = deadline;
+        rentalIds[i] = rentalId;
+        kinds[i] = kind;
+    }
+
+    private void move(int from, int to) {
+        deadlines[to] = deadlines[from];
+        rentalIds[to] = rentalIds[from];
+        kinds[to] = kinds[from];
+    }
+}
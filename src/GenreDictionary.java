@@ -0,0 +1,34 @@
+package project;
+
+class GenreDictionary {
+    private final java.util.concurrent.ConcurrentHashMap<String, Integer> ordinals = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size;
+
+    int ordinal(String genre) {
+        Integer ordinal = ordinals.get(genre);
+        return ordinal != null ? ordinal : register(genre);
+    }
+
+    int find(String genre) {
+        Integer ordinal = ordinals.get(genre);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    String name(int ordinal) {
+        return names[ordinal];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized int register(String genre) {
+        Integer existing = ordinals.get(genre);
+        if (existing != null) return existing;
+        if (size == names.length) names = java.util.Arrays.copyOf(names, size * 2);
+        names[size] = genre;
+        ordinals.put(genre, size);
+        return size++;
+    }
+}
@@ -0,0 +1,506 @@
+package project;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+
+class GraphAnalytics {
+    static final double DAMPING = 0.85;
+    static final double PAGERANK_TOLERANCE = 1e-6;
+    static final int PAGERANK_MAX_ITERATIONS = 50;
+    static final int LABEL_PROPAGATION_ROUNDS = 20;
+    static final double COMMUNITY_BOOST = 1.25;
+    static final double MIN_INFLUENCE_FACTOR = 0.5;
+    static final double MAX_INFLUENCE_FACTOR = 2.0;
+    static final long REFRESH_DELAY_MILLIS = Long.getLong("rental.analyticsDelayMs", 200);
+    private static final int GRAIN = 2048;
+
+    private final CsrGraph graph;
+    private final ForkJoinPool pool;
+    private final Lock writeLock;
+    private final Object analysisLock = new Object();
+    private java.util.concurrent.ScheduledExecutorService scheduler;
+
+    private volatile Snapshot snapshot = new Snapshot(0, new int[0], 0, new int[0], new double[0]);
+    private int[] parent = new int[0];
+    private int fullRuns;
+    private int incrementalRuns;
+
+    private int[] pending = new int[16];
+    private int pendingConnections;
+    private boolean rebuild = true;
+    private boolean stale = true;
+    private boolean scheduled;
+
+    GraphAnalytics(RecommendationGraph graph) {
+        this(graph, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    GraphAnalytics(RecommendationGraph graph, Lock writeLock) {
+        this(graph, Runtime.getRuntime().availableProcessors(), writeLock);
+    }
+
+    GraphAnalytics(RecommendationGraph graph, int parallelism) {
+        this(graph, parallelism, null);
+    }
+
+    GraphAnalytics(RecommendationGraph graph, int parallelism, Lock writeLock) {
+        this.graph = graph.adjacency;
+        this.pool = new ForkJoinPool(parallelism);
+        this.writeLock = writeLock;
+    }
+
+    synchronized void customerAdded() {
+        changed();
+    }
+
+    synchronized void connectionAdded(int customer1, int customer2) {
+        if (2 * pendingConnections + 2 > pending.length) pending = java.util.Arrays.copyOf(pending, pending.length * 2);
+        pending[2 * pendingConnections] = customer1;
+        pending[2 * pendingConnections + 1] = customer2;
+        pendingConnections++;
+        changed();
+    }
+
+    synchronized void connectionRemoved() {
+        invalidate();
+    }
+
+    synchronized void invalidate() {
+        rebuild = true;
+        pendingConnections = 0;
+        changed();
+    }
+
+    private void changed() {
+        stale = true;
+        if (scheduled || writeLock == null) return;
+        scheduled = true;
+        scheduler().schedule(this::refresh, REFRESH_DELAY_MILLIS, java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    private java.util.concurrent.ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "graph-analytics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    void refresh() {
+        if (writeLock != null) writeLock.lock();
+        boolean locked = writeLock != null;
+        try {
+            synchronized (analysisLock) {
+                Capture capture = capture();
+                if (locked) {
+                    writeLock.unlock();
+                    locked = false;
+                }
+                if (capture != null) analyse(capture);
+            }
+        } finally {
+            if (locked) writeLock.unlock();
+        }
+    }
+
+    void recomputeAll() {
+        synchronized (this) {
+            rebuild = true;
+            stale = true;
+        }
+        refresh();
+    }
+
+    private Capture capture() {
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int n = graph.vertexCount();
+        synchronized (this) {
+            scheduled = false;
+            if (!stale && n == snapshot.vertexCount) return null;
+            int[] endpoints = new int[2 * pendingConnections];
+            for (int i = 0; i < endpoints.length; i++) endpoints[i] = graph.vertex(pending[i]);
+            Capture capture = new Capture(offsets, targets, n, rebuild || snapshot.vertexCount == 0, endpoints);
+            pendingConnections = 0;
+            rebuild = false;
+            stale = false;
+            return capture;
+        }
+    }
+
+    private void analyse(Capture capture) {
+        Snapshot previous = snapshot;
+        int n = capture.vertexCount;
+        int componentCount;
+        int[] community;
+        double[] rank;
+        if (capture.rebuild) {
+            parent = connectedComponents(capture.offsets, capture.targets, n);
+            componentCount = 0;
+            for (int v = 0; v < n; v++) {
+                if (parent[v] == v) componentCount++;
+            }
+            community = labelPropagation(capture.offsets, capture.targets, n);
+            double[] initial = new double[n];
+            java.util.Arrays.fill(initial, 1.0 / Math.max(1, n));
+            rank = pageRank(capture.offsets, capture.targets, n, initial);
+            fullRuns++;
+        } else {
+            int oldCount = previous.vertexCount;
+            parent = java.util.Arrays.copyOf(parent, n);
+            community = java.util.Arrays.copyOf(previous.community, n);
+            for (int v = oldCount; v < n; v++) {
+                parent[v] = v;
+                community[v] = v;
+            }
+            componentCount = previous.componentCount + n - oldCount;
+
+            int[] frontier = capture.endpoints;
+            for (int i = 0; i < frontier.length; i += 2) {
+                int rootA = find(frontier[i]);
+                int rootB = find(frontier[i + 1]);
+                if (rootA != rootB) {
+                    parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+                    componentCount--;
+                }
+            }
+            propagateLocally(capture.offsets, capture.targets, n, frontier, community);
+
+            double[] initial = java.util.Arrays.copyOf(previous.rank, n);
+            double total = 0;
+            for (int v = 0; v < n; v++) {
+                if (v >= oldCount) initial[v] = 1.0 / n;
+                total += initial[v];
+            }
+            for (int v = 0; v < n; v++) initial[v] /= total;
+            rank = pageRank(capture.offsets, capture.targets, n, initial);
+            incrementalRuns++;
+        }
+        int[] roots = new int[n];
+        for (int v = 0; v < n; v++) roots[v] = find(v);
+        snapshot = new Snapshot(n, roots, componentCount, community, rank);
+    }
+
+    int component(int customerId) {
+        Snapshot current = snapshot;
+        int vertex = graph.vertex(customerId);
+        return vertex < 0 || vertex >= current.vertexCount ? -1 : graph.id(current.roots[vertex]);
+    }
+
+    int community(int customerId) {
+        Snapshot current = snapshot;
+        int vertex = graph.vertex(customerId);
+        return vertex < 0 || vertex >= current.vertexCount ? -1 : graph.id(current.community[vertex]);
+    }
+
+    double influence(int customerId) {
+        Snapshot current = snapshot;
+        int vertex = graph.vertex(customerId);
+        return vertex < 0 || vertex >= current.vertexCount ? 0 : current.rank[vertex];
+    }
+
+    int componentCount() {
+        return snapshot.componentCount;
+    }
+
+    int communityCount() {
+        Snapshot current = snapshot;
+        boolean[] seen = new boolean[current.vertexCount];
+        int count = 0;
+        for (int v = 0; v < current.vertexCount; v++) {
+            if (!seen[current.community[v]]) {
+                seen[current.community[v]] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int[] topInfluencers(int k) {
+        Snapshot current = snapshot;
+        int[] top = RecommendationEngine.topSlots(current.rank, current.vertexCount, Math.min(k, current.vertexCount));
+        for (int i = 0; i < top.length; i++) top[i] = graph.id(top[i]);
+        return top;
+    }
+
+    double[] affinities(int customerId, int[] friendIds) {
+        Snapshot current = snapshot;
+        double[] factors = new double[friendIds.length];
+        int customer = graph.vertex(customerId);
+        if (customer >= current.vertexCount) customer = -1;
+        for (int i = 0; i < friendIds.length; i++) {
+            int friend = graph.vertex(friendIds[i]);
+            if (friend < 0 || friend >= current.vertexCount) {
+                factors[i] = 1.0;
+                continue;
+            }
+            double factor = Math.sqrt(current.rank[friend] * current.vertexCount);
+            factor = Math.max(MIN_INFLUENCE_FACTOR, Math.min(MAX_INFLUENCE_FACTOR, factor));
+            if (customer >= 0 && current.community[customer] == current.community[friend]) factor *= COMMUNITY_BOOST;
+            factors[i] = factor;
+        }
+        return factors;
+    }
+
+    int fullRuns() {
+        synchronized (analysisLock) {
+            return fullRuns;
+        }
+    }
+
+    int incrementalRuns() {
+        synchronized (analysisLock) {
+            return incrementalRuns;
+        }
+    }
+
+    private int find(int vertex) {
+        while (parent[vertex] != vertex) {
+            parent[vertex] = parent[parent[vertex]];
+            vertex = parent[vertex];
+        }
+        return vertex;
+    }
+
+    private int[] connectedComponents(int[] offsets, int[] targets, int n) {
+        AtomicIntegerArray roots = new AtomicIntegerArray(n);
+        forEach(n, (from, to) -> {
+            for (int v = from; v < to; v++) roots.set(v, v);
+            return 0;
+        });
+        forEach(n, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    if (targets[e] > v) union(roots, v, targets[e]);
+                }
+            }
+            return 0;
+        });
+        int[] result = new int[n];
+        forEach(n, (from, to) -> {
+            for (int v = from; v < to; v++) result[v] = find(roots, v);
+            return 0;
+        });
+        return result;
+    }
+
+    private static int find(AtomicIntegerArray roots, int vertex) {
+        while (true) {
+            int parent = roots.get(vertex);
+            if (parent == vertex) return vertex;
+            int grandparent = roots.get(parent);
+            if (parent != grandparent) roots.compareAndSet(vertex, parent, grandparent);
+            vertex = grandparent;
+        }
+    }
+
+    private static void union(AtomicIntegerArray roots, int a, int b) {
+        while (true) {
+            a = find(roots, a);
+            b = find(roots, b);
+            if (a == b) return;
+            if (a < b) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            if (roots.compareAndSet(a, a, b)) return;
+        }
+    }
+
+    private int[] labelPropagation(int[] offsets, int[] targets, int n) {
+        int[] current = new int[n];
+        for (int v = 0; v < n; v++) current[v] = v;
+        int[] next = new int[n];
+        for (int round = 0; round < LABEL_PROPAGATION_ROUNDS; round++) {
+            int[] labels = current;
+            int[] updated = next;
+            double changed = forEach(n, (from, to) -> {
+                int[] scratch = new int[16];
+                int changes = 0;
+                for (int v = from; v < to; v++) {
+                    int degree = offsets[v + 1] - offsets[v];
+                    if (degree > scratch.length) scratch = new int[Integer.highestOneBit(degree) << 1];
+                    updated[v] = dominantLabel(labels, offsets, targets, v, scratch);
+                    if (updated[v] != labels[v]) changes++;
+                }
+                return changes;
+            });
+            current = updated;
+            next = labels;
+            if (changed == 0) break;
+        }
+        return current;
+    }
+
+    private static void propagateLocally(int[] offsets, int[] targets, int n, int[] frontier, int[] community) {
+        int[] queue = new int[Math.max(16, frontier.length)];
+        boolean[] queued = new boolean[n];
+        int head = 0;
+        int tail = 0;
+        for (int vertex : frontier) {
+            if (!queued[vertex]) {
+                queued[vertex] = true;
+                queue[tail++] = vertex;
+            }
+        }
+        int budget = Math.max(1024, frontier.length * 64);
+        int[] scratch = new int[16];
+        while (head < tail && budget-- > 0) {
+            int v = queue[head++];
+            queued[v] = false;
+            int degree = offsets[v + 1] - offsets[v];
+            if (degree > scratch.length) scratch = new int[Integer.highestOneBit(degree) << 1];
+            int label = dominantLabel(community, offsets, targets, v, scratch);
+            if (label == community[v]) continue;
+            community[v] = label;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int neighbour = targets[e];
+                if (queued[neighbour]) continue;
+                if (tail == queue.length) {
+                    if (head > queue.length / 2) {
+                        System.arraycopy(queue, head, queue, 0, tail - head);
+                        tail -= head;
+                        head = 0;
+                    } else {
+                        queue = java.util.Arrays.copyOf(queue, queue.length * 2);
+                    }
+                }
+                queued[neighbour] = true;
+                queue[tail++] = neighbour;
+            }
+        }
+    }
+
+    private static int dominantLabel(int[] labels, int[] offsets, int[] targets, int v, int[] scratch) {
+        int degree = offsets[v + 1] - offsets[v];
+        if (degree == 0) return labels[v];
+        int ownCount = 0;
+        for (int i = 0; i < degree; i++) {
+            scratch[i] = labels[targets[offsets[v] + i]];
+            if (scratch[i] == labels[v]) ownCount++;
+        }
+        java.util.Arrays.sort(scratch, 0, degree);
+        int best = labels[v];
+        int bestCount = ownCount;
+        for (int i = 0; i < degree; ) {
+            int j = i;
+            while (j < degree && scratch[j] == scratch[i]) j++;
+            if (j - i > bestCount) {
+                best = scratch[i];
+                bestCount = j - i;
+            }
+            i = j;
+        }
+        return best;
+    }
+
+    private double[] pageRank(int[] offsets, int[] targets, int n, double[] initial) {
+        if (n == 0) return initial;
+        double[] current = initial;
+        double[] next = new double[n];
+        double[] share = new double[n];
+        for (int iteration = 0; iteration < PAGERANK_MAX_ITERATIONS; iteration++) {
+            double[] ranks = current;
+            double dangling = forEach(n, (from, to) -> {
+                double sum = 0;
+                for (int v = from; v < to; v++) {
+                    int degree = offsets[v + 1] - offsets[v];
+                    if (degree == 0) {
+                        share[v] = 0;
+                        sum += ranks[v];
+                    } else {
+                        share[v] = ranks[v] / degree;
+                    }
+                }
+                return sum;
+            });
+            double base = (1 - DAMPING + DAMPING * dangling) / n;
+            double[] updated = next;
+            double delta = forEach(n, (from, to) -> {
+                double sum = 0;
+                for (int v = from; v < to; v++) {
+                    double incoming = 0;
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) incoming += share[targets[e]];
+                    updated[v] = base + DAMPING * incoming;
+                    sum += Math.abs(updated[v] - ranks[v]);
+                }
+                return sum;
+            });
+            next = current;
+            current = updated;
+            if (delta < PAGERANK_TOLERANCE) break;
+        }
+        return current;
+    }
+
+    interface RangeBody {
+        double apply(int from, int to);
+    }
+
+    private double forEach(int n, RangeBody body) {
+        if (n <= GRAIN || pool.getParallelism() == 1) return body.apply(0, n);
+        return pool.invoke(new RangeTask(body, 0, n));
+    }
+
+    private static final class Snapshot {
+        final int vertexCount;
+        final int[] roots;
+        final int componentCount;
+        final int[] community;
+        final double[] rank;
+
+        Snapshot(int vertexCount, int[] roots, int componentCount, int[] community, double[] rank) {
+            this.vertexCount = vertexCount;
+            this.roots = roots;
+            this.componentCount = componentCount;
+            this.community = community;
+            this.rank = rank;
+        }
+    }
+
+    private static final class Capture {
+        final int[] offsets;
+        final int[] targets;
+        final int vertexCount;
+        final boolean rebuild;
+        final int[] endpoints;
+
+        Capture(int[] offsets, int[] targets, int vertexCount, boolean rebuild, int[] endpoints) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.vertexCount = vertexCount;
+            this.rebuild = rebuild;
+            this.endpoints = endpoints;
+        }
+    }
+
+    private static class RangeTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeBody body;
+        private final int from;
+        private final int to;
+
+        RangeTask(RangeBody body, int from, int to) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= GRAIN) return body.apply(from, to);
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(body, from, middle);
+            left.fork();
+            double right = new RangeTask(body, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package project;
+
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+class GraphLayout {
+    static final float SPACING = 100f;
+    private static final float THETA = 0.8f;
+    private static final int MAX_DEPTH = 24;
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int LONG_EDGE_CELLS = 16;
+    private static final int EMPTY = -1;
+    private static final int INTERNAL = -2;
+    private static final int AGGREGATE = -3;
+
+    final int vertexCount;
+    final int[] ids;
+    final int[] offsets;
+    final int[] targets;
+    final String[] labels;
+    final float[] xs;
+    final float[] ys;
+    float minX, minY, maxX, maxY;
+    int iterations;
+
+    private int placed;
+    private float[] forceX;
+    private float[] forceY;
+
+    private int nodeCount;
+    private int[] children;
+    private int[] bodies;
+    private float[] masses;
+    private float[] sumX;
+    private float[] sumY;
+    private float[] cellX;
+    private float[] cellY;
+    private float[] halves;
+
+    private int grid;
+    private float cellSize;
+    private int[] nodeCellStart;
+    private int[] nodeCells;
+    private int[] edgeCellStart;
+    private int[] edgeCells;
+    private int[] longEdges;
+    private int[] sources;
+    private int[] edgeStamps;
+    private int stamp;
+
+    private GraphLayout(int[] ids, int[] offsets, int[] targets, String[] labels) {
+        this.vertexCount = ids.length;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.labels = labels;
+        this.xs = new float[vertexCount];
+        this.ys = new float[vertexCount];
+    }
+
+    static GraphLayout capture(CsrGraph graph, IntObjectMap<Customer> customers) {
+        int n = graph.vertexCount();
+        int[] offsets = graph.offsets().clone();
+        int[] targets = graph.targets().clone();
+        int[] ids = new int[n];
+        String[] labels = new String[n];
+        for (int v = 0; v < n; v++) {
+            ids[v] = graph.id(v);
+            Customer customer = customers == null ? null : customers.get(ids[v]);
+            labels[v] = customer != null ? ids[v] + ": " + customer.name() : String.valueOf(ids[v]);
+        }
+        return new GraphLayout(ids, offsets, targets, labels);
+    }
+
+    int edgeCount() {
+        return targets.length / 2;
+    }
+
+    int newVertices() {
+        return vertexCount - placed;
+    }
+
+    void layOut(GraphLayout previous, int fullSteps, int refineSteps) {
+        seed(previous);
+        if (previous == null || newVertices() > vertexCount / 2) {
+            run(fullSteps, (float) Math.sqrt(Math.max(vertexCount, 1)) * SPACING / 8);
+        } else {
+            run(refineSteps, SPACING);
+        }
+        buildIndex();
+    }
+
+    void seed(GraphLayout previous) {
+        IntIntMap previousVertex = new IntIntMap(previous == null ? 16 : previous.vertexCount);
+        if (previous != null) {
+            for (int v = 0; v < previous.vertexCount; v++) previousVertex.put(previous.ids[v], v);
+        }
+        boolean[] known = new boolean[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            int old = previousVertex.get(ids[v], -1);
+            if (old >= 0) {
+                xs[v] = previous.xs[old];
+                ys[v] = previous.ys[old];
+                known[v] = true;
+                placed++;
+            }
+        }
+        java.util.SplittableRandom random = new java.util.SplittableRandom(vertexCount);
+        float side = (float) Math.sqrt(Math.max(vertexCount, 1)) * SPACING;
+        for (int v = 0; v < vertexCount; v++) {
+            if (known[v]) continue;
+            int anchor = -1;
+            for (int p = offsets[v]; p < offsets[v + 1] && anchor < 0; p++) {
+                if (known[targets[p]]) anchor = targets[p];
+            }
+            if (anchor >= 0) {
+                xs[v] = xs[anchor] + (float) (random.nextDouble() - 0.5) * SPACING;
+                ys[v] = ys[anchor] + (float) (random.nextDouble() - 0.5) * SPACING;
+            } else {
+                xs[v] = (float) (random.nextDouble() - 0.5) * side;
+                ys[v] = (float) (random.nextDouble() - 0.5) * side;
+            }
+            known[v] = true;
+        }
+        computeBounds();
+    }
+
+    void run(int steps, float startTemperature) {
+        for (int i = 0; i < steps; i++) {
+            step(startTemperature * (1 - i / (float) steps) + SPACING * 0.05f);
+        }
+        computeBounds();
+    }
+
+    void step(float temperature) {
+        int n = vertexCount;
+        if (n == 0) return;
+        if (forceX == null) {
+            forceX = new float[n];
+            forceY = new float[n];
+        }
+        buildTree();
+        IntStream vertices = IntStream.range(0, n);
+        if (n >= PARALLEL_THRESHOLD) vertices = vertices.parallel();
+        vertices.forEach(this::accumulateForce);
+        for (int v = 0; v < n; v++) {
+            float fx = forceX[v];
+            float fy = forceY[v];
+            float length = (float) Math.sqrt(fx * fx + fy * fy);
+            if (length > temperature) {
+                fx *= temperature / length;
+                fy *= temperature / length;
+            }
+            xs[v] += fx;
+            ys[v] += fy;
+        }
+        iterations++;
+    }
+
+    private void accumulateForce(int v) {
+        float x = xs[v];
+        float y = ys[v];
+        float k2 = SPACING * SPACING;
+        float fx = 0;
+        float fy = 0;
+        int[] stack = new int[4 * MAX_DEPTH + 8];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (bodies[node] == v) continue;
+            float mass = masses[node];
+            float dx = x - sumX[node] / mass;
+            float dy = y - sumY[node] / mass;
+            float d2 = dx * dx + dy * dy;
+            float size = 2 * halves[node];
+            if (bodies[node] != INTERNAL || size * size < THETA * THETA * d2) {
+                if (d2 < 0.01f) {
+                    dx = ((v * 31 + node) & 1) == 0 ? 0.1f : -0.1f;
+                    d2 = 0.01f;
+                }
+                float push = mass * k2 / d2;
+                fx += dx * push;
+                fy += dy * push;
+            } else {
+                for (int q = 0; q < 4; q++) {
+                    int child = children[node * 4 + q];
+                    if (child >= 0) stack[top++] = child;
+                }
+            }
+        }
+        for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+            int u = targets[p];
+            float dx = xs[u] - x;
+            float dy = ys[u] - y;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy);
+            fx += dx * distance / SPACING;
+            fy += dy * distance / SPACING;
+        }
+        forceX[v] = fx;
+        forceY[v] = fy;
+    }
+
+    private void buildTree() {
+        computeBounds();
+        int capacity = Math.max(16, 2 * vertexCount + 1);
+        if (bodies == null || bodies.length < capacity) allocateTree(capacity);
+        float half = Math.max(maxX - minX, maxY - minY) / 2 + 1;
+        nodeCount = 0;
+        newNode((minX + maxX) / 2, (minY + maxY) / 2, half);
+        for (int v = 0; v < vertexCount; v++) insert(v);
+    }
+
+    private void insert(int v) {
+        float x = xs[v];
+        float y = ys[v];
+        int node = 0;
+        for (int depth = 0; ; depth++) {
+            masses[node]++;
+            sumX[node] += x;
+            sumY[node] += y;
+            int body = bodies[node];
+            if (body == EMPTY) {
+                bodies[node] = v;
+                return;
+            }
+            if (body == AGGREGATE) return;
+            if (body >= 0) {
+                if (depth >= MAX_DEPTH) {
+                    bodies[node] = AGGREGATE;
+                    return;
+                }
+                bodies[node] = INTERNAL;
+                int child = child(node, quadrant(node, xs[body], ys[body]));
+                masses[child] = 1;
+                sumX[child] = xs[body];
+                sumY[child] = ys[body];
+                bodies[child] = body;
+            }
+            node = child(node, quadrant(node, x, y));
+        }
+    }
+
+    private int quadrant(int node, float x, float y) {
+        return (x >= cellX[node] ? 1 : 0) | (y >= cellY[node] ? 2 : 0);
+    }
+
+    private int child(int node, int quadrant) {
+        int child = children[node * 4 + quadrant];
+        if (child >= 0) return child;
+        float half = halves[node] / 2;
+        child = newNode(cellX[node] + ((quadrant & 1) != 0 ? half : -half), cellY[node] + ((quadrant & 2) != 0 ? half : -half), half);
+        children[node * 4 + quadrant] = child;
+        return child;
+    }
+
+    private int newNode(float x, float y, float half) {
+        if (nodeCount == bodies.length) allocateTree(nodeCount * 2);
+        int node = nodeCount++;
+        java.util.Arrays.fill(children, node * 4, node * 4 + 4, -1);
+        bodies[node] = EMPTY;
+        masses[node] = 0;
+        sumX[node] = 0;
+        sumY[node] = 0;
+        cellX[node] = x;
+        cellY[node] = y;
+        halves[node] = half;
+        return node;
+    }
+
+    private void allocateTree(int capacity) {
+        children = children == null ? new int[capacity * 4] : java.util.Arrays.copyOf(children, capacity * 4);
+        bodies = bodies == null ? new int[capacity] : java.util.Arrays.copyOf(bodies, capacity);
+        masses = masses == null ? new float[capacity] : java.util.Arrays.copyOf(masses, capacity);
+        sumX = sumX == null ? new float[capacity] : java.util.Arrays.copyOf(sumX, capacity);
+        sumY = sumY == null ? new float[capacity] : java.util.Arrays.copyOf(sumY, capacity);
+        cellX = cellX == null ? new float[capacity] : java.util.Arrays.copyOf(cellX, capacity);
+        cellY = cellY == null ? new float[capacity] : java.util.Arrays.copyOf(cellY, capacity);
+        halves = halves == null ? new float[capacity] : java.util.Arrays.copyOf(halves, capacity);
+    }
+
+    void computeBounds() {
+        minX = minY = Float.MAX_VALUE;
+        maxX = maxY = -Float.MAX_VALUE;
+        for (int v = 0; v < vertexCount; v++) {
+            minX = Math.min(minX, xs[v]);
+            maxX = Math.max(maxX, xs[v]);
+            minY = Math.min(minY, ys[v]);
+            maxY = Math.max(maxY, ys[v]);
+        }
+        if (vertexCount == 0) minX = minY = maxX = maxY = 0;
+    }
+
+    void buildIndex() {
+        computeBounds();
+        grid = (int) Math.max(1, Math.min(1024, Math.sqrt(vertexCount / 4.0)));
+        cellSize = Math.max(maxX - minX, maxY - minY) / grid + 1;
+
+        nodeCellStart = new int[grid * grid + 1];
+        for (int v = 0; v < vertexCount; v++) nodeCellStart[cellOf(xs[v], ys[v]) + 1]++;
+        for (int c = 0; c < grid * grid; c++) nodeCellStart[c + 1] += nodeCellStart[c];
+        nodeCells = new int[vertexCount];
+        int[] fill = java.util.Arrays.copyOf(nodeCellStart, grid * grid);
+        for (int v = 0; v < vertexCount; v++) nodeCells[fill[cellOf(xs[v], ys[v])]++] = v;
+
+        sources = new int[targets.length];
+        for (int v = 0; v < vertexCount; v++) java.util.Arrays.fill(sources, offsets[v], offsets[v + 1], v);
+        edgeCellStart = new int[grid * grid + 1];
+        int longCount = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            if (pass == 1) {
+                for (int c = 0; c < grid * grid; c++) edgeCellStart[c + 1] += edgeCellStart[c];
+                edgeCells = new int[edgeCellStart[grid * grid]];
+                longEdges = new int[longCount];
+                fill = java.util.Arrays.copyOf(edgeCellStart, grid * grid);
+                longCount = 0;
+            }
+            for (int p = 0; p < targets.length; p++) {
+                int v = sources[p];
+                int u = targets[p];
+                if (u <= v) continue;
+                int x0 = column(Math.min(xs[v], xs[u]));
+                int x1 = column(Math.max(xs[v], xs[u]));
+                int y0 = row(Math.min(ys[v], ys[u]));
+                int y1 = row(Math.max(ys[v], ys[u]));
+                if ((x1 - x0 + 1) * (y1 - y0 + 1) > LONG_EDGE_CELLS) {
+                    if (pass == 1) longEdges[longCount] = p;
+                    longCount++;
+                    continue;
+                }
+                for (int cy = y0; cy <= y1; cy++) {
+                    for (int cx = x0; cx <= x1; cx++) {
+                        if (pass == 0) {
+                            edgeCellStart[cy * grid + cx + 1]++;
+                        } else {
+                            edgeCells[fill[cy * grid + cx]++] = p;
+                        }
+                    }
+                }
+            }
+        }
+        edgeStamps = new int[targets.length];
+        stamp = 0;
+    }
+
+    void visitNodes(float left, float top, float right, float bottom, IntConsumer visitor) {
+        if (vertexCount == 0) return;
+        int x0 = column(left), x1 = column(right);
+        int y0 = row(top), y1 = row(bottom);
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                int cell = cy * grid + cx;
+                for (int i = nodeCellStart[cell]; i < nodeCellStart[cell + 1]; i++) {
+                    int v = nodeCells[i];
+                    if (xs[v] >= left && xs[v] <= right && ys[v] >= top && ys[v] <= bottom) visitor.accept(v);
+                }
+            }
+        }
+    }
+
+    void visitEdges(float left, float top, float right, float bottom, IntConsumer visitor) {
+        if (vertexCount == 0) return;
+        if (++stamp == 0) {
+            java.util.Arrays.fill(edgeStamps, 0);
+            stamp = 1;
+        }
+        int x0 = column(left), x1 = column(right);
+        int y0 = row(top), y1 = row(bottom);
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                int cell = cy * grid + cx;
+                for (int i = edgeCellStart[cell]; i < edgeCellStart[cell + 1]; i++) {
+                    int p = edgeCells[i];
+                    if (edgeStamps[p] == stamp) continue;
+                    edgeStamps[p] = stamp;
+                    visitor.accept(p);
+                }
+            }
+        }
+        for (int p : longEdges) {
+            int v = sources[p];
+            int u = targets[p];
+            if (Math.max(xs[v], xs[u]) >= left && Math.min(xs[v], xs[u]) <= right
+                    && Math.max(ys[v], ys[u]) >= top && Math.min(ys[v], ys[u]) <= bottom) {
+                visitor.accept(p);
+            }
+        }
+    }
+
+    int source(int edge) {
+        return sources[edge];
+    }
+
+    private int cellOf(float x, float y) {
+        return row(y) * grid + column(x);
+    }
+
+    private int column(float x) {
+        return Math.max(0, Math.min(grid - 1, (int) ((x - minX) / cellSize)));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min(grid - 1, (int) ((y - minY) / cellSize)));
+    }
+}
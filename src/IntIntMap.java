@@ -0,0 +1,126 @@
+package project;
+
+class IntIntMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    IntIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    IntIntMap(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / 0.6);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int key, int missing) {
+        int slot = IntObjectMap.mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+
+    boolean containsKey(int key) {
+        int slot = IntObjectMap.mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    void put(int key, int value) {
+        int slot = IntObjectMap.mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) rehash(keys.length << 1);
+    }
+
+    int addTo(int key, int delta) {
+        int slot = IntObjectMap.mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) return values[slot] += delta;
+            slot = (slot + 1) & mask;
+        }
+        put(key, delta);
+        return delta;
+    }
+
+    boolean remove(int key) {
+        int slot = IntObjectMap.mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                shiftDown(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    void clear() {
+        java.util.Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void shiftDown(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (!used[slot]) break;
+            int home = IntObjectMap.mix(keys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        used[hole] = false;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (!oldUsed[i]) continue;
+            int slot = IntObjectMap.mix(oldKeys[i]) & mask;
+            while (used[slot]) slot = (slot + 1) & mask;
+            used[slot] = true;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * 0.6f);
+    }
+}
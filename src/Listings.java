@@ -0,0 +1,139 @@
+package project;
+
+import java.io.IOException;
+
+class Listings {
+    static final int PAGE_SIZE = Integer.getInteger("rental.pageSize", 20);
+    static final int EXPORT_PAGE_SIZE = 10_000;
+
+    enum View {
+        HISTORY, MOVIES, CUSTOMERS, GENRES
+    }
+
+    static class Page {
+        int rows;
+        String next;
+    }
+
+    static Page write(View view, String cursor, int pageSize, boolean repeatHeaders, Appendable out) throws IOException {
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be positive");
+        Page page = new Page();
+        StringBuilder rows = new StringBuilder(pageSize * 64);
+        switch (view) {
+            case HISTORY: history(cursor, pageSize, rows, page); break;
+            case MOVIES: movies(cursor, pageSize, rows, page); break;
+            case CUSTOMERS: customers(cursor, pageSize, rows, page); break;
+            default: genres(cursor, pageSize, repeatHeaders, rows, page);
+        }
+        out.append(rows);
+        return page;
+    }
+
+    private static void history(String cursor, int pageSize, StringBuilder rows, Page page) {
+        synchronized (Project.history) {
+            int last = Project.history.last();
+            int entry = cursor == null ? last : Math.min(parse(cursor, 0), last);
+            for (; entry >= 0 && page.rows < pageSize; entry--, page.rows++) {
+                rows.append("  • Rental ").append(entry).append(": ").append(Project.describeRental(entry)).append(' ')
+                        .append(Project.describeDueState(entry)).append('\n');
+            }
+            page.next = entry >= 0 ? Integer.toString(entry) : null;
+        }
+    }
+
+    private static void movies(String cursor, int pageSize, StringBuilder rows, Page page) {
+        int row = 0;
+        if (cursor == null || !cursor.startsWith("c")) {
+            Movie[] batch = new Movie[pageSize];
+            int slot = Project.movieSearch.collect(cursor == null ? 0 : parse(cursor, 0), batch);
+            for (Movie movie : batch) {
+                if (movie == null) break;
+                rows.append(movie).append('\n');
+                page.rows++;
+            }
+            if (slot >= 0) {
+                page.next = Integer.toString(slot);
+                return;
+            }
+        } else {
+            row = parse(cursor, 1);
+        }
+        for (; row < Project.catalogSize() && page.rows < pageSize; row++) {
+            if (Project.movieIndex.containsKey(Project.catalog.id(row))) continue;
+            rows.append(Project.describeCatalogRow(row)).append('\n');
+            page.rows++;
+        }
+        page.next = row < Project.catalogSize() ? "c" + row : null;
+    }
+
+    private static void customers(String cursor, int pageSize, StringBuilder rows, Page page) {
+        Customer current = Project.head;
+        if (cursor != null) {
+            current = Project.customerIndex.get(parse(cursor, 0));
+            if (current == null) throw new IllegalArgumentException("Customer " + cursor + " is no longer listed; start from the beginning");
+        }
+        for (; current != null && page.rows < pageSize; current = current.next, page.rows++) {
+            rows.append(current).append('\n');
+        }
+        page.next = current != null ? Integer.toString(current.id) : null;
+    }
+
+    private static void genres(String cursor, int pageSize, boolean repeatHeaders, StringBuilder rows, Page page) {
+        if (cursor == null || !cursor.startsWith("c")) {
+            int separator = cursor == null ? -1 : cursor.indexOf(':');
+            if (cursor != null && separator < 0) throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            int offset = cursor == null ? 0 : parse(cursor.substring(0, separator), 0);
+            String from = cursor == null ? null : cursor.substring(separator + 1);
+            for (java.util.Iterator<CategoryNode> it = Project.categoryTree.range(from, null); it.hasNext(); ) {
+                CategoryNode node = it.next();
+                if (!node.genre.equals(from)) offset = 0;
+                if (offset >= node.movies.size()) continue;
+                if (page.rows == pageSize) {
+                    page.next = offset + ":" + node.genre;
+                    return;
+                }
+                if (offset == 0 || repeatHeaders) rows.append("  Genre: ").append(node.genre).append(offset > 0 ? " (continued)\n" : "\n");
+                for (; offset < node.movies.size(); offset++, page.rows++) {
+                    if (page.rows == pageSize) {
+                        page.next = offset + ":" + node.genre;
+                        return;
+                    }
+                    rows.append("    ").append(node.movies.get(offset)).append('\n');
+                }
+            }
+            cursor = "c0:0";
+        }
+        int separator = cursor.indexOf(':');
+        if (separator < 0) throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        int genre = parse(cursor.substring(0, separator), 1);
+        int offset = parse(cursor.substring(separator + 1), 0);
+        for (; genre < (Project.catalog == null ? 0 : Project.catalog.genreCount()); genre++, offset = 0) {
+            int size = Project.catalog.genreSize(genre);
+            boolean header = offset > 0 && !repeatHeaders;
+            for (; offset < size; offset++) {
+                if (page.rows == pageSize) {
+                    page.next = "c" + genre + ":" + offset;
+                    return;
+                }
+                int row = Project.catalog.genreRow(genre, offset);
+                if (Project.movieIndex.containsKey(Project.catalog.id(row))) continue;
+                if (!header) {
+                    rows.append("  Catalog genre: ").append(Project.catalog.genreName(genre)).append(offset > 0 ? " (continued)\n" : "\n");
+                    header = true;
+                }
+                rows.append("    ").append(Project.describeCatalogRow(row)).append('\n');
+                page.rows++;
+            }
+        }
+    }
+
+    private static int parse(String cursor, int from) {
+        try {
+            int value = Integer.parseInt(cursor.substring(from));
+            if (value < 0) throw new NumberFormatException();
+            return value;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package project;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+class LoadGenerator {
+    private static final int SEED_BATCH = 1000;
+
+    final int clients;
+    final int customers;
+    final int movies;
+    long completed;
+    long errors;
+    double seconds;
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    LoadGenerator(int clients, int customers, int movies) {
+        this.clients = clients;
+        this.customers = customers;
+        this.movies = movies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : RentalServer.DEFAULT_PORT;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        boolean seed = args.length <= 4 || Boolean.parseBoolean(args[4]);
+
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        LoadGenerator generator = new LoadGenerator(clients, 10_000, 20_000);
+        if (seed) generator.seed(address);
+        generator.run(address, seconds);
+        System.out.println(generator.report());
+    }
+
+    void seed(InetSocketAddress address) throws IOException {
+        java.util.List<String> commands = new java.util.ArrayList<>();
+        for (int id = 1; id <= customers; id++) commands.add("CUSTOMER " + id + " Customer" + id);
+        for (int id = 1; id <= movies; id++) commands.add("MOVIE " + id + " Genre" + (id % 20) + " Movie " + id);
+        java.util.SplittableRandom random = new java.util.SplittableRandom(7);
+        for (int id = 1; id <= customers; id++) {
+            for (int i = 0; i < 5; i++) commands.add("CONNECT " + id + " " + (1 + random.nextInt(customers)));
+        }
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int from = 0; from < commands.size(); from += SEED_BATCH) {
+                int to = Math.min(commands.size(), from + SEED_BATCH);
+                StringBuilder batch = new StringBuilder();
+                for (int i = from; i < to; i++) batch.append(commands.get(i)).append('\n');
+                out.write(batch.toString());
+                out.flush();
+                for (int i = from; i < to; i++) {
+                    if (in.readLine() == null) throw new IOException("Server closed the connection while seeding");
+                }
+            }
+        }
+    }
+
+    void run(InetSocketAddress address, int durationSeconds) throws IOException {
+        java.util.SplittableRandom random = new java.util.SplittableRandom(11);
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < clients; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.configureBlocking(false);
+                channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+                channel.register(selector, SelectionKey.OP_READ, new Client(channel));
+            }
+            long start = System.nanoTime();
+            long deadline = start + durationSeconds * 1_000_000_000L;
+            for (SelectionKey key : selector.keys()) send((Client) key.attachment(), random);
+
+            while (System.nanoTime() < deadline) {
+                selector.select(100);
+                for (java.util.Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Client client = (Client) key.attachment();
+                    if (client.channel.read(client.inbound) < 0) throw new IOException("Server closed a client connection");
+                    ByteBuffer inbound = client.inbound;
+                    for (int i = 0; i < inbound.position(); i++) {
+                        if (inbound.get(i) != '\n') continue;
+                        latency.record(System.nanoTime() - client.sentNanos);
+                        completed++;
+                        if (inbound.get(0) == 'E') errors++;
+                        inbound.flip();
+                        inbound.position(i + 1);
+                        inbound.compact();
+                        send(client, random);
+                        break;
+                    }
+                }
+            }
+            seconds = (System.nanoTime() - start) / 1e9;
+            for (SelectionKey key : selector.keys()) key.channel().close();
+        }
+    }
+
+    private void send(Client client, java.util.SplittableRandom random) throws IOException {
+        int customerId = 1 + random.nextInt(customers);
+        int movieId = 1 + random.nextInt(movies);
+        int pick = random.nextInt(100);
+        String command;
+        if (pick < 40) {
+            command = "RENT " + customerId + " " + movieId;
+        } else if (pick < 60) {
+            command = "RECOMMEND " + customerId + " 10";
+        } else if (pick < 75) {
+            command = "ENQUEUE " + customerId + " " + movieId;
+        } else if (pick < 85) {
+            command = "PROCESS";
+        } else {
+            command = "UNDO";
+        }
+        ByteBuffer out = StandardCharsets.UTF_8.encode(command + "\n");
+        client.sentNanos = System.nanoTime();
+        while (out.hasRemaining()) client.channel.write(out);
+    }
+
+    String report() {
+        return String.format("%d clients, %.1f s: %,d commands (%,d errors), %,.0f commands/s%n  latency %s",
+                clients, seconds, completed, errors, completed / seconds, latency.summary("us", 1_000));
+    }
+
+    private static class Client {
+        final SocketChannel channel;
+        final ByteBuffer inbound = ByteBuffer.allocate(16 * 1024);
+        long sentNanos;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
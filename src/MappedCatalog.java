@@ -0,0 +1,245 @@
+package project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+class MappedCatalog implements AutoCloseable {
+    private static final int MAGIC = 0x4D43544C;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int RECORD_BYTES = 16;
+    private static final int FLAG_RENTED = 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int count;
+    private final int titleHeap;
+    private final String[] genres;
+    private final int[] postingsOffsets;
+    private final int[] postingsCounts;
+
+    private MappedCatalog(FileChannel channel, MappedByteBuffer map) throws IOException {
+        this.channel = channel;
+        this.map = map;
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            throw new IOException("Not a movie catalog file");
+        }
+        count = map.getInt(8);
+        int genreCount = map.getInt(12);
+        int genreTable = map.getInt(16);
+        titleHeap = map.getInt(20);
+
+        genres = new String[genreCount];
+        postingsOffsets = new int[genreCount];
+        postingsCounts = new int[genreCount];
+        int position = genreTable;
+        for (int i = 0; i < genreCount; i++) {
+            postingsOffsets[i] = map.getInt(position);
+            postingsCounts[i] = map.getInt(position + 4);
+            int length = map.getInt(position + 8);
+            genres[i] = decode(position + 12, length);
+            position += 12 + length;
+        }
+    }
+
+    static MappedCatalog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Catalog files larger than 2 GB are not supported");
+        }
+        try {
+            return new MappedCatalog(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static void write(Path path, java.util.Collection<Movie> movies) throws IOException {
+        java.util.List<Movie> sorted = new java.util.ArrayList<>(movies.size());
+        IntObjectMap<Movie> seen = new IntObjectMap<>(movies.size());
+        for (Movie movie : movies) {
+            if (seen.putIfAbsent(movie.id, movie) == null) sorted.add(movie);
+        }
+        sorted.sort((a, b) -> Integer.compare(a.id, b.id));
+
+        java.util.Map<String, Integer> genreOrdinals = new java.util.TreeMap<>();
+        for (Movie movie : sorted) genreOrdinals.putIfAbsent(movie.genre(), 0);
+        String[] genreNames = genreOrdinals.keySet().toArray(new String[0]);
+        if (genreNames.length > 0xFFFF) throw new IOException("Catalogs support at most 65535 genres");
+        for (int i = 0; i < genreNames.length; i++) genreOrdinals.put(genreNames[i], i);
+        int[] postingsCounts = new int[genreNames.length];
+        for (Movie movie : sorted) postingsCounts[genreOrdinals.get(movie.genre())]++;
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            long recordsEnd = HEADER_BYTES + (long) sorted.size() * RECORD_BYTES;
+            long postingsStart = recordsEnd;
+            long genreTable = postingsStart + (long) sorted.size() * 4;
+            byte[][] encodedGenres = new byte[genreNames.length][];
+            long titleHeap = genreTable;
+            for (int i = 0; i < genreNames.length; i++) {
+                encodedGenres[i] = genreNames[i].getBytes(StandardCharsets.UTF_8);
+                titleHeap += 12 + encodedGenres[i].length;
+            }
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(sorted.size()).putInt(genreNames.length)
+                    .putInt(checkedOffset(genreTable)).putInt(checkedOffset(titleHeap)).putLong(0);
+
+            long titleOffset = 0;
+            for (Movie movie : sorted) {
+                int titleLength = movie.title().getBytes(StandardCharsets.UTF_8).length;
+                buffer = ensure(out, buffer, RECORD_BYTES);
+                buffer.putInt(movie.id);
+                buffer.putShort((short) (int) genreOrdinals.get(movie.genre()));
+                buffer.put((byte) (movie.isRented() ? FLAG_RENTED : 0));
+                buffer.put((byte) 0);
+                buffer.putInt(checkedOffset(titleOffset));
+                buffer.putInt(titleLength);
+                titleOffset += titleLength;
+            }
+            checkedOffset(titleHeap + titleOffset);
+
+            int[] postingsStarts = new int[genreNames.length];
+            int[] cursor = new int[genreNames.length];
+            for (int i = 1; i < genreNames.length; i++) postingsStarts[i] = postingsStarts[i - 1] + postingsCounts[i - 1];
+            int[] postings = new int[sorted.size()];
+            for (int row = 0; row < sorted.size(); row++) {
+                int genre = genreOrdinals.get(sorted.get(row).genre());
+                postings[postingsStarts[genre] + cursor[genre]++] = row;
+            }
+            for (int row : postings) {
+                buffer = ensure(out, buffer, 4);
+                buffer.putInt(row);
+            }
+
+            for (int i = 0; i < genreNames.length; i++) {
+                buffer = ensure(out, buffer, 12 + encodedGenres[i].length);
+                buffer.putInt(checkedOffset(postingsStart + postingsStarts[i] * 4L));
+                buffer.putInt(postingsCounts[i]);
+                buffer.putInt(encodedGenres[i].length);
+                buffer.put(encodedGenres[i]);
+            }
+
+            for (Movie movie : sorted) {
+                byte[] title = movie.title().getBytes(StandardCharsets.UTF_8);
+                buffer = ensure(out, buffer, title.length);
+                buffer.put(title);
+            }
+            drain(out, buffer);
+            out.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    int size() {
+        return count;
+    }
+
+    int genreCount() {
+        return genres.length;
+    }
+
+    String genreName(int ordinal) {
+        return genres[ordinal];
+    }
+
+    int genreOrdinal(String genre) {
+        int ordinal = java.util.Arrays.binarySearch(genres, genre);
+        return ordinal >= 0 ? ordinal : -1;
+    }
+
+    int id(int row) {
+        return map.getInt(HEADER_BYTES + row * RECORD_BYTES);
+    }
+
+    int genreOrdinalAt(int row) {
+        return map.getShort(HEADER_BYTES + row * RECORD_BYTES + 4) & 0xFFFF;
+    }
+
+    boolean isRented(int row) {
+        return (map.get(HEADER_BYTES + row * RECORD_BYTES + 6) & FLAG_RENTED) != 0;
+    }
+
+    String title(int row) {
+        int record = HEADER_BYTES + row * RECORD_BYTES;
+        return decode(titleHeap + map.getInt(record + 8), map.getInt(record + 12));
+    }
+
+    int find(int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = id(mid);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    int genreSize(int ordinal) {
+        return postingsCounts[ordinal];
+    }
+
+    int genreRow(int ordinal, int index) {
+        return map.getInt(postingsOffsets[ordinal] + index * 4);
+    }
+
+    Movie materialize(int row) {
+        Movie movie = new Movie(id(row), title(row), genres[genreOrdinalAt(row)]);
+        movie.setAvailability(1, isRented(row) ? 0 : 1);
+        return movie;
+    }
+
+    String describe(int row) {
+        return "Movie " + id(row) + ": " + title(row) + " (" + genres[genreOrdinalAt(row)] + ") ["
+                + (isRented(row) ? "RENTED" : "AVAILABLE") + "]";
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        map.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkedOffset(long offset) throws IOException {
+        if (offset > Integer.MAX_VALUE) throw new IOException("Catalog exceeds the 2 GB file limit");
+        return (int) offset;
+    }
+
+    private static ByteBuffer ensure(FileChannel out, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return buffer;
+        drain(out, buffer);
+        if (buffer.capacity() < bytes) return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) out.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,284 @@
+package project;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+class Metrics {
+    static final int LOOKUP_SAMPLE_RATE = 64;
+
+    private static final java.util.Map<String, LongAdder> counters = new java.util.LinkedHashMap<>();
+    private static final java.util.Map<String, Timer> timers = new java.util.LinkedHashMap<>();
+    private static final java.util.Map<String, DoubleSupplier> gauges = new java.util.LinkedHashMap<>();
+
+    static final LongAdder requestsEnqueued = counter("requests.enqueued");
+    static final LongAdder requestsDequeued = counter("requests.dequeued");
+    private static final LongAdder[] rentals = new LongAdder[RentalStatus.values().length];
+    static final LongAdder rentalsUndone = counter("rentals.undone");
+    static final LongAdder operationsUndone = counter("operations.undone");
+    static final LongAdder operationsRedone = counter("operations.redone");
+    static final LongAdder rentalsReturned = counter("rentals.returned");
+    static final LongAdder rentalsOverdue = counter("rentals.overdue");
+    static final LongAdder rentalsAutoReleased = counter("rentals.autoReleased");
+    static final LongAdder rentalsImported = counter("rentals.imported");
+    static final LongAdder customerLookups = counter("lookups.customer");
+    static final LongAdder customerMisses = counter("lookups.customer.miss");
+    static final LongAdder movieLookups = counter("lookups.movie");
+    static final LongAdder movieMisses = counter("lookups.movie.miss");
+    static final LongAdder waitlistParked = counter("waitlist.parked");
+    static final LongAdder waitlistFulfilled = counter("waitlist.fulfilled");
+    static final LongAdder recommendationCacheHits = counter("recommendations.cacheHits");
+
+    static final Timer processTimer = timer("process");
+    static final Timer undoTimer = timer("undo");
+    static final Timer recommendTimer = timer("recommend");
+    static final Timer customerLookupTimer = timer("lookups.customer.sampled");
+    static final Timer movieLookupTimer = timer("lookups.movie.sampled");
+
+    static {
+        for (RentalStatus status : RentalStatus.values()) {
+            rentals[status.ordinal()] = counter("rentals." + status.name().toLowerCase(java.util.Locale.ROOT));
+        }
+        gauge("queue.depth", () -> Project.queue.size());
+        gauge("customers", () -> Project.customerIndex.size());
+        gauge("catalog.size", () -> Project.movies.size() + Project.catalogSize());
+        gauge("catalog.rentedRatio", () -> {
+            int indexed = Project.movieSearch.size();
+            return indexed == 0 ? 0 : Project.movieSearch.rentedCount() / (double) indexed;
+        });
+        gauge("catalog.genres", () -> Project.genres.size());
+        gauge("strings.pooled", () -> Project.strings.size());
+        gauge("strings.poolBytes", () -> Project.strings.bytes());
+        gauge("graph.connections", () -> Project.recommendationGraph.connectionCount());
+        gauge("history.size", () -> Project.history.size());
+        gauge("rentals.active", () -> {
+            synchronized (Project.history) {
+                return Project.history.activeCount();
+            }
+        });
+        gauge("rentals.overdueNow", () -> {
+            synchronized (Project.history) {
+                return Project.history.overdueCount();
+            }
+        });
+        gauge("waitlist.depth", () -> Project.waitlisted.sum());
+        gauge("undo.records", () -> {
+            synchronized (Project.history) {
+                return Project.transactions.undoableRecords();
+            }
+        });
+        gauge("undo.compactedTransactions", () -> {
+            synchronized (Project.history) {
+                return Project.transactions.compactedTransactions();
+            }
+        });
+        gauge("recommendations.cachedCustomers", () -> Project.recommender.cachedCustomers());
+    }
+
+    private static LongAdder counter(String name) {
+        LongAdder counter = new LongAdder();
+        counters.put(name, counter);
+        return counter;
+    }
+
+    private static Timer timer(String name) {
+        Timer timer = new Timer();
+        timers.put(name, timer);
+        return timer;
+    }
+
+    static synchronized void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    static void rental(RentalStatus status) {
+        rentals[status.ordinal()].increment();
+    }
+
+    static void rentals(BatchResult result) {
+        for (RentalStatus status : RentalStatus.values()) {
+            int count = result.count(status);
+            if (count > 0) rentals[status.ordinal()].add(count);
+        }
+    }
+
+    static boolean sampleLookup() {
+        return ThreadLocalRandom.current().nextInt(LOOKUP_SAMPLE_RATE) == 0;
+    }
+
+    static synchronized java.util.Map<String, Double> snapshot() {
+        java.util.Map<String, Double> values = new java.util.LinkedHashMap<>();
+        for (java.util.Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            values.put(counter.getKey(), (double) counter.getValue().sum());
+        }
+        for (java.util.Map.Entry<String, DoubleSupplier> gauge : gauges.entrySet()) {
+            double value;
+            try {
+                value = gauge.getValue().getAsDouble();
+            } catch (RuntimeException e) {
+                value = Double.NaN;
+            }
+            values.put(gauge.getKey(), value);
+        }
+        for (java.util.Map.Entry<String, Timer> timer : timers.entrySet()) {
+            LatencyHistogram histogram = timer.getValue().snapshot();
+            String name = timer.getKey();
+            values.put(name + ".count", (double) histogram.count());
+            values.put(name + ".meanUs", histogram.mean() / 1000);
+            values.put(name + ".p50Us", histogram.percentile(50) / 1000.0);
+            values.put(name + ".p99Us", histogram.percentile(99) / 1000.0);
+            values.put(name + ".p999Us", histogram.percentile(99.9) / 1000.0);
+            values.put(name + ".maxUs", histogram.max() / 1000.0);
+        }
+        return values;
+    }
+
+    static String dump(String separator) {
+        StringBuilder out = new StringBuilder();
+        for (java.util.Map.Entry<String, Double> metric : snapshot().entrySet()) {
+            if (out.length() > 0) out.append(separator);
+            out.append(metric.getKey()).append('=').append(format(metric.getValue()));
+        }
+        return out.toString();
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) return Long.toString((long) value);
+        return String.format(java.util.Locale.ROOT, "%.3f", value);
+    }
+
+    static void startFromProperties() {
+        registerMBean();
+        long interval = Long.getLong("rental.metricsIntervalSec", 0);
+        if (interval <= 0) return;
+        String file = System.getProperty("rental.metricsFile");
+        java.util.concurrent.ScheduledExecutorService reporter = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "rental-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> report(file), interval, interval, java.util.concurrent.TimeUnit.SECONDS);
+    }
+
+    private static void report(String file) {
+        String line = java.time.Instant.now() + " " + dump(" ");
+        if (file == null) {
+            System.out.println(line);
+            return;
+        }
+        try {
+            Files.write(Paths.get(file), (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.out.println("Could not write metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    static synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("project:type=Metrics");
+            javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) server.registerMBean(new MetricsMBean(), name);
+        } catch (JMException e) {
+            System.out.println("Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    static void print(PrintStream out) {
+        for (java.util.Map.Entry<String, Double> metric : snapshot().entrySet()) {
+            out.printf("  %-36s %s%n", metric.getKey(), format(metric.getValue()));
+        }
+    }
+
+    static class Timer {
+        private static final int STRIPES = 16;
+        private final LatencyHistogram[] stripes = new LatencyHistogram[STRIPES];
+
+        Timer() {
+            for (int i = 0; i < STRIPES; i++) stripes[i] = new LatencyHistogram();
+        }
+
+        void record(long nanos) {
+            LatencyHistogram stripe = stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+            synchronized (stripe) {
+                stripe.record(nanos);
+            }
+        }
+
+        void stop(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        LatencyHistogram snapshot() {
+            LatencyHistogram merged = new LatencyHistogram();
+            for (LatencyHistogram stripe : stripes) {
+                synchronized (stripe) {
+                    merged.merge(stripe);
+                }
+            }
+            return merged;
+        }
+    }
+
+    private static class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Double value = snapshot().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            java.util.Map<String, Double> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) list.add(new Attribute(attribute, values.get(attribute)));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) {
+            return "dump".equals(action) ? dump("\n") : null;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            java.util.List<MBeanAttributeInfo> attributes = new java.util.ArrayList<>();
+            for (String name : snapshot().keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, "double", name, true, false, false));
+            }
+            javax.management.MBeanOperationInfo dump = new javax.management.MBeanOperationInfo("dump",
+                    "All metrics as text", new javax.management.MBeanParameterInfo[0], "java.lang.String",
+                    javax.management.MBeanOperationInfo.INFO);
+            return new MBeanInfo(Metrics.class.getName(), "Movie rental runtime metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null,
+                    new javax.management.MBeanOperationInfo[] {dump}, null);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package project;
+
+import java.util.BitSet;
+import java.util.Locale;
+
+class MovieQueryIndex {
+    private final java.util.ArrayList<Movie> bySlot = new java.util.ArrayList<>();
+    private final BitSet rented = new BitSet();
+    private final BitSet live = new BitSet();
+    private final java.util.ArrayList<BitSet> genrePostings = new java.util.ArrayList<>();
+    private int[] titleBySlot = new int[16];
+    private int[] titleOrder = new int[16];
+    private int titleCount;
+    private int titleSorted;
+    private int removedSinceCompaction;
+
+    synchronized void add(Movie movie) {
+        int slot = bySlot.size();
+        movie.slot = slot;
+        bySlot.add(movie);
+        while (genrePostings.size() <= movie.genreOrdinal) genrePostings.add(null);
+        BitSet postings = genrePostings.get(movie.genreOrdinal);
+        if (postings == null) genrePostings.set(movie.genreOrdinal, postings = new BitSet());
+        postings.set(slot);
+        if (slot == titleBySlot.length) titleBySlot = java.util.Arrays.copyOf(titleBySlot, slot * 2);
+        titleBySlot[slot] = movie.titleHandle;
+        if (titleCount == titleOrder.length) titleOrder = java.util.Arrays.copyOf(titleOrder, titleCount * 2);
+        titleOrder[titleCount++] = slot;
+        rented.set(slot, movie.isRented());
+        live.set(slot);
+    }
+
+    synchronized void remove(Movie movie) {
+        int slot = movie.slot;
+        if (slot < 0 || bySlot.get(slot) != movie) return;
+        bySlot.set(slot, null);
+        live.clear(slot);
+        rented.clear(slot);
+        BitSet postings = genrePostings.get(movie.genreOrdinal);
+        if (postings != null) postings.clear(slot);
+        removedSinceCompaction++;
+        movie.slot = -1;
+    }
+
+    synchronized void rentedChanged(Movie movie) {
+        if (movie.slot >= 0) {
+            rented.set(movie.slot, movie.isRented());
+        }
+    }
+
+    synchronized int size() {
+        return live.cardinality();
+    }
+
+    synchronized int rentedCount() {
+        return rented.cardinality();
+    }
+
+    synchronized int collect(int fromSlot, Movie[] page) {
+        int count = 0;
+        int slot = live.nextSetBit(fromSlot);
+        for (; slot >= 0 && count < page.length; slot = live.nextSetBit(slot + 1)) page[count++] = bySlot.get(slot);
+        return slot;
+    }
+
+    Query query() {
+        return new Query();
+    }
+
+    private void sortTitles() {
+        if (removedSinceCompaction > titleCount / 2) {
+            int kept = 0;
+            int keptSorted = 0;
+            for (int i = 0; i < titleCount; i++) {
+                if (!live.get(titleOrder[i])) continue;
+                if (i < titleSorted) keptSorted++;
+                titleOrder[kept++] = titleOrder[i];
+            }
+            titleCount = kept;
+            titleSorted = keptSorted;
+            removedSinceCompaction = 0;
+        }
+        if (titleSorted == titleCount) return;
+        int[] scratch = new int[titleCount];
+        mergeSort(titleOrder, scratch, titleSorted, titleCount);
+        merge(titleOrder, scratch, 0, titleSorted, titleCount);
+        titleSorted = titleCount;
+    }
+
+    private void mergeSort(int[] slots, int[] scratch, int from, int to) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int slot = slots[i];
+                int j = i - 1;
+                while (j >= from && compareTitles(slots[j], slot) > 0) {
+                    slots[j + 1] = slots[j];
+                    j--;
+                }
+                slots[j + 1] = slot;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(slots, scratch, from, middle);
+        mergeSort(slots, scratch, middle, to);
+        merge(slots, scratch, from, middle, to);
+    }
+
+    private void merge(int[] slots, int[] scratch, int from, int middle, int to) {
+        if (from == middle || middle == to || compareTitles(slots[middle - 1], slots[middle]) <= 0) return;
+        System.arraycopy(slots, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compareTitles(scratch[left], scratch[right]) <= 0)) {
+                slots[i] = scratch[left++];
+            } else {
+                slots[i] = scratch[right++];
+            }
+        }
+    }
+
+    private int compareTitles(int firstSlot, int secondSlot) {
+        return Project.strings.compareIgnoreCase(titleBySlot[firstSlot], titleBySlot[secondSlot]);
+    }
+
+    private int firstTitleAtOrAfter(String lowerPrefix, boolean pastPrefix) {
+        int low = 0;
+        int high = titleCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Project.strings.compareToPrefix(titleBySlot[titleOrder[middle]], lowerPrefix);
+            if (comparison < 0 || (pastPrefix && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String titleKey(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    static final class Matches {
+        final int total;
+        final java.util.List<Movie> movies;
+
+        Matches(int total, java.util.List<Movie> movies) {
+            this.total = total;
+            this.movies = movies;
+        }
+    }
+
+    class Query {
+        private String genre;
+        private String titlePrefix;
+        private Boolean rentedFilter;
+
+        Query inGenre(String genre) {
+            this.genre = genre;
+            return this;
+        }
+
+        Query titleStartsWith(String prefix) {
+            this.titlePrefix = prefix;
+            return this;
+        }
+
+        Query available() {
+            this.rentedFilter = Boolean.FALSE;
+            return this;
+        }
+
+        Query rented() {
+            this.rentedFilter = Boolean.TRUE;
+            return this;
+        }
+
+        int count() {
+            synchronized (MovieQueryIndex.this) {
+                return evaluate().cardinality();
+            }
+        }
+
+        java.util.List<Movie> list(int limit) {
+            return matches(limit).movies;
+        }
+
+        Matches matches(int limit) {
+            synchronized (MovieQueryIndex.this) {
+                BitSet matches = evaluate();
+                int total = matches.cardinality();
+                java.util.List<Movie> result = new java.util.ArrayList<>(Math.min(limit, total));
+                for (int slot = matches.nextSetBit(0); slot >= 0 && result.size() < limit; slot = matches.nextSetBit(slot + 1)) {
+                    result.add(bySlot.get(slot));
+                }
+                return new Matches(total, result);
+            }
+        }
+
+        private BitSet evaluate() {
+            BitSet result;
+            if (genre != null) {
+                int genreOrdinal = Project.genres.find(genre);
+                BitSet postings = genreOrdinal >= 0 && genreOrdinal < genrePostings.size() ? genrePostings.get(genreOrdinal) : null;
+                result = postings == null ? new BitSet() : (BitSet) postings.clone();
+            } else {
+                result = (BitSet) live.clone();
+            }
+
+            if (titlePrefix != null && !result.isEmpty()) {
+                String prefix = titleKey(titlePrefix);
+                sortTitles();
+                BitSet prefixMatches = new BitSet();
+                int end = firstTitleAtOrAfter(prefix, true);
+                for (int i = firstTitleAtOrAfter(prefix, false); i < end; i++) prefixMatches.set(titleOrder[i]);
+                result.and(prefixMatches);
+            }
+
+            if (rentedFilter != null) {
+                if (rentedFilter) {
+                    result.and(rented);
+                } else {
+                    result.andNot(rented);
+                }
+            }
+            return result;
+        }
+    }
+}
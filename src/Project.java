@@ -5,123 +5,466 @@ import java.util.*;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 class Movie {
+    private static final VarHandle AVAILABLE;
+    static {
+        try {
+            AVAILABLE = MethodHandles.lookup().findVarHandle(Movie.class, "available", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
     int id;
-    String title;
-    String genre;
-    boolean rented;
+    int titleHandle;
+    int genreOrdinal;
+    volatile int copies;
+    volatile int available;
+    volatile java.util.concurrent.ConcurrentLinkedDeque<Request> waitlist;
+    int slot = -1;
     
     Movie(int id, String title, String genre) {
+        this(id, Project.strings.intern(title), Project.genres.ordinal(genre));
+    }
+    
+    Movie(int id, int titleHandle, int genreOrdinal) {
         this.id = id;
-        this.title = title;
-        this.genre = genre;
-        this.rented = false;
+        this.titleHandle = titleHandle;
+        this.genreOrdinal = genreOrdinal;
+        this.copies = 1;
+        this.available = 1;
+    }
+    
+    String title() {
+        return Project.strings.get(titleHandle);
+    }
+    
+    String genre() {
+        return Project.genres.name(genreOrdinal);
+    }
+    
+    boolean tryRent() {
+        int current;
+        do {
+            current = available;
+            if (current <= 0) return false;
+        } while (!AVAILABLE.compareAndSet(this, current, current - 1));
+        return true;
+    }
+    
+    boolean release() {
+        int current;
+        do {
+            current = available;
+            if (current >= copies) return false;
+        } while (!AVAILABLE.compareAndSet(this, current, current + 1));
+        return true;
+    }
+    
+    boolean isRented() {
+        return available <= 0;
+    }
+    
+    synchronized void addCopies(int count) {
+        copies = Math.addExact(copies, count);
+        AVAILABLE.getAndAdd(this, count);
+    }
+    
+    synchronized boolean removeCopies(int count) {
+        int current;
+        do {
+            current = available;
+            if (current < count) return false;
+        } while (!AVAILABLE.compareAndSet(this, current, current - count));
+        copies -= count;
+        return true;
+    }
+    
+    synchronized void setAvailability(int copies, int available) {
+        this.copies = copies;
+        this.available = Math.max(0, Math.min(available, copies));
+    }
+    
+    java.util.concurrent.ConcurrentLinkedDeque<Request> waitlist() {
+        java.util.concurrent.ConcurrentLinkedDeque<Request> current = waitlist;
+        if (current == null) {
+            synchronized (this) {
+                current = waitlist;
+                if (current == null) {
+                    current = new java.util.concurrent.ConcurrentLinkedDeque<>();
+                    waitlist = current;
+                }
+            }
+        }
+        return current;
+    }
+    
+    boolean hasWaiters() {
+        java.util.concurrent.ConcurrentLinkedDeque<Request> current = waitlist;
+        return current != null && !current.isEmpty();
     }
     
     public String toString() {
-        return "Movie " + id + ": " + title + " (" + genre + ") [" + (rented ? "RENTED" : "AVAILABLE") + "]";
+        String state = copies == 1 ? (isRented() ? "RENTED" : "AVAILABLE") : available + "/" + copies + " AVAILABLE";
+        return "Movie " + id + ": " + title() + " (" + genre() + ") [" + state + "]";
     }
 }
 
 class Customer {
     int id;
-    String name;
+    int nameHandle;
     Customer next;
     
     Customer(int id, String name) {
+        this(id, Project.strings.intern(name));
+    }
+    
+    Customer(int id, int nameHandle) {
         this.id = id;
-        this.name = name;
+        this.nameHandle = nameHandle;
         this.next = null;
     }
     
+    String name() {
+        return Project.strings.get(nameHandle);
+    }
+    
     public String toString() {
-        return "Customer " + id + ": " + name;
+        return "Customer " + id + ": " + name();
     }
 }
 
 class CategoryNode {
     String genre;
+    int genreOrdinal;
     java.util.List<Movie> movies;
     CategoryNode left, right;
+    CategoryNode parent;
+    boolean red;
     
-    CategoryNode(String genre) {
+    CategoryNode(String genre, int genreOrdinal) {
         this.genre = genre;
+        this.genreOrdinal = genreOrdinal;
         this.movies = new java.util.ArrayList<>();
         this.left = null;
         this.right = null;
     }
 }
 
-class MovieCategoryTree {
+class MovieCategoryTree implements Iterable<CategoryNode> {
     CategoryNode root;
+    int genreCount;
+    int version;
+    private CategoryNode[] byOrdinal = new CategoryNode[64];
     
     void addMovie(Movie movie) {
-        root = insertMovie(root, movie);
+        CategoryNode node = nodeFor(movie.genreOrdinal);
+        node.movies.add(movie);
+        version++;
+    }
+    
+    void removeMovie(Movie movie) {
+        CategoryNode node = node(movie.genreOrdinal);
+        if (node != null && node.movies.remove(movie)) version++;
+    }
+    
+    void addMovies(java.util.List<Movie> batch) {
+        if (batch.isEmpty()) return;
+        java.util.List<java.util.List<Movie>> byGenre = new java.util.ArrayList<>();
+        int[] ordinals = new int[8];
+        int distinct = 0;
+        for (Movie movie : batch) {
+            int ordinal = movie.genreOrdinal;
+            while (byGenre.size() <= ordinal) byGenre.add(null);
+            java.util.List<Movie> group = byGenre.get(ordinal);
+            if (group == null) {
+                byGenre.set(ordinal, group = new java.util.ArrayList<>());
+                if (distinct == ordinals.length) ordinals = java.util.Arrays.copyOf(ordinals, distinct * 2);
+                ordinals[distinct++] = ordinal;
+            }
+            group.add(movie);
+        }
+        if (root == null) {
+            String[] genres = new String[distinct];
+            for (int i = 0; i < distinct; i++) genres[i] = Project.genres.name(ordinals[i]);
+            java.util.Arrays.sort(genres);
+            int redDepth = 31 - Integer.numberOfLeadingZeros(genres.length + 1);
+            root = buildBalanced(genres, 0, genres.length - 1, 0, redDepth, null);
+            genreCount = genres.length;
+        }
+        for (int i = 0; i < distinct; i++) {
+            nodeFor(ordinals[i]).movies.addAll(byGenre.get(ordinals[i]));
+        }
+        version++;
+    }
+    
+    private CategoryNode buildBalanced(String[] genres, int low, int high, int depth, int redDepth, CategoryNode parent) {
+        if (low > high) return null;
+        int middle = (low + high) >>> 1;
+        CategoryNode node = new CategoryNode(genres[middle], Project.genres.ordinal(genres[middle]));
+        node.parent = parent;
+        node.red = depth == redDepth;
+        node.left = buildBalanced(genres, low, middle - 1, depth + 1, redDepth, node);
+        node.right = buildBalanced(genres, middle + 1, high, depth + 1, redDepth, node);
+        index(node);
+        return node;
+    }
+    
+    private CategoryNode node(int genreOrdinal) {
+        return genreOrdinal < byOrdinal.length ? byOrdinal[genreOrdinal] : null;
+    }
+    
+    private CategoryNode nodeFor(int genreOrdinal) {
+        CategoryNode node = node(genreOrdinal);
+        return node != null ? node : insertGenre(Project.genres.name(genreOrdinal));
+    }
+    
+    private void index(CategoryNode node) {
+        if (node.genreOrdinal >= byOrdinal.length) {
+            byOrdinal = java.util.Arrays.copyOf(byOrdinal, Math.max(byOrdinal.length * 2, node.genreOrdinal + 1));
+        }
+        byOrdinal[node.genreOrdinal] = node;
     }
     
-    CategoryNode insertMovie(CategoryNode node, Movie movie) {
-        if (node == null) {
-            return new CategoryNode(movie.genre).movies.add(movie) != false ? new CategoryNode(movie.genre) : null;
+    CategoryNode insertGenre(String genre) {
+        int genreOrdinal = Project.genres.ordinal(genre);
+        CategoryNode existing = node(genreOrdinal);
+        if (existing != null) return existing;
+        CategoryNode parent = null;
+        CategoryNode node = root;
+        int comparison = 0;
+        while (node != null) {
+            comparison = genre.compareTo(node.genre);
+            parent = node;
+            node = comparison < 0 ? node.left : node.right;
         }
         
-        int comparison = movie.genre.compareTo(node.genre);
-        if (comparison < 0) {
-            node.left = insertMovie(node.left, movie);
-        } else if (comparison > 0) {
-            node.right = insertMovie(node.right, movie);
+        CategoryNode created = new CategoryNode(genre, genreOrdinal);
+        created.parent = parent;
+        created.red = true;
+        if (parent == null) {
+            root = created;
+        } else if (comparison < 0) {
+            parent.left = created;
         } else {
-            node.movies.add(movie);
+            parent.right = created;
+        }
+        index(created);
+        genreCount++;
+        version++;
+        rebalanceAfterInsert(created);
+        return created;
+    }
+    
+    CategoryNode findGenre(String genre) {
+        int genreOrdinal = Project.genres.find(genre);
+        return genreOrdinal < 0 ? null : node(genreOrdinal);
+    }
+    
+    java.util.List<Movie> moviesInGenre(String genre) {
+        CategoryNode node = findGenre(genre);
+        return node != null ? node.movies : java.util.Collections.emptyList();
+    }
+    
+    public java.util.Iterator<CategoryNode> iterator() {
+        return range(null, null);
+    }
+    
+    java.util.Iterator<CategoryNode> range(String fromInclusive, String toInclusive) {
+        CategoryNode first = fromInclusive == null ? leftmost(root) : ceiling(fromInclusive);
+        return new java.util.Iterator<CategoryNode>() {
+            CategoryNode next = first != null && (toInclusive == null || first.genre.compareTo(toInclusive) <= 0) ? first : null;
+            
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            public CategoryNode next() {
+                if (next == null) throw new java.util.NoSuchElementException();
+                CategoryNode current = next;
+                CategoryNode following = successor(current);
+                next = following != null && (toInclusive == null || following.genre.compareTo(toInclusive) <= 0) ? following : null;
+                return current;
+            }
+        };
+    }
+    
+    int height() {
+        int height = 0;
+        java.util.ArrayDeque<CategoryNode> level = new java.util.ArrayDeque<>();
+        if (root != null) level.add(root);
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                CategoryNode node = level.poll();
+                if (node.left != null) level.add(node.left);
+                if (node.right != null) level.add(node.right);
+            }
+        }
+        return height;
+    }
+    
+    private CategoryNode ceiling(String genre) {
+        CategoryNode node = root;
+        CategoryNode best = null;
+        while (node != null) {
+            int comparison = genre.compareTo(node.genre);
+            if (comparison == 0) return node;
+            if (comparison < 0) {
+                best = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
         }
+        return best;
+    }
+    
+    private static CategoryNode leftmost(CategoryNode node) {
+        if (node == null) return null;
+        while (node.left != null) node = node.left;
         return node;
     }
     
-    void displayByGenre() {
-        System.out.println("\nMovies organized by genre:");
-        inorderTraversal(root);
+    private static CategoryNode successor(CategoryNode node) {
+        if (node.right != null) return leftmost(node.right);
+        CategoryNode parent = node.parent;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
     }
     
-    void inorderTraversal(CategoryNode node) {
-        if (node != null) {
-            inorderTraversal(node.left);
-            System.out.println("  Genre: " + node.genre);
-            for (Movie movie : node.movies) {
-                System.out.println("    " + movie);
+    private void rebalanceAfterInsert(CategoryNode node) {
+        while (node != root && node.parent.red) {
+            CategoryNode parent = node.parent;
+            CategoryNode grandparent = parent.parent;
+            if (parent == grandparent.left) {
+                CategoryNode uncle = grandparent.right;
+                if (uncle != null && uncle.red) {
+                    parent.red = false;
+                    uncle.red = false;
+                    grandparent.red = true;
+                    node = grandparent;
+                } else {
+                    if (node == parent.right) {
+                        node = parent;
+                        rotateLeft(node);
+                        parent = node.parent;
+                    }
+                    parent.red = false;
+                    grandparent.red = true;
+                    rotateRight(grandparent);
+                }
+            } else {
+                CategoryNode uncle = grandparent.left;
+                if (uncle != null && uncle.red) {
+                    parent.red = false;
+                    uncle.red = false;
+                    grandparent.red = true;
+                    node = grandparent;
+                } else {
+                    if (node == parent.left) {
+                        node = parent;
+                        rotateRight(node);
+                        parent = node.parent;
+                    }
+                    parent.red = false;
+                    grandparent.red = true;
+                    rotateLeft(grandparent);
+                }
             }
-            inorderTraversal(node.right);
+        }
+        root.red = false;
+    }
+    
+    private void rotateLeft(CategoryNode node) {
+        CategoryNode pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != null) pivot.left.parent = node;
+        replaceChild(node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+    }
+    
+    private void rotateRight(CategoryNode node) {
+        CategoryNode pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != null) pivot.right.parent = node;
+        replaceChild(node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+    }
+    
+    private void replaceChild(CategoryNode node, CategoryNode replacement) {
+        CategoryNode parent = node.parent;
+        replacement.parent = parent;
+        if (parent == null) {
+            root = replacement;
+        } else if (node == parent.left) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
         }
     }
 }
 
 class RecommendationGraph {
-    java.util.Map<Integer, java.util.List<Integer>> adjacencyList = new java.util.HashMap<>();
+    final CsrGraph adjacency = new CsrGraph();
     
     void addCustomer(int customerId) {
-        adjacencyList.putIfAbsent(customerId, new java.util.ArrayList<>());
+        adjacency.addVertex(customerId);
     }
     
-    void addConnection(int customer1, int customer2) {
-        if (!adjacencyList.containsKey(customer1)) addCustomer(customer1);
-        if (!adjacencyList.containsKey(customer2)) addCustomer(customer2);
-        
-        adjacencyList.get(customer1).add(customer2);
-        adjacencyList.get(customer2).add(customer1);
+    boolean addConnection(int customer1, int customer2) {
+        if (customer1 == customer2) {
+            addCustomer(customer1);
+            return false;
+        }
+        boolean added = adjacency.addEdge(customer1, customer2);
+        adjacency.addEdge(customer2, customer1);
+        return added;
+    }
+    
+    boolean removeConnection(int customer1, int customer2) {
+        boolean removed = adjacency.removeEdge(customer1, customer2);
+        adjacency.removeEdge(customer2, customer1);
+        return removed;
+    }
+    
+    int customerCount() {
+        return adjacency.vertexCount();
+    }
+    
+    long connectionCount() {
+        return adjacency.edgeCount() / 2;
     }
     
     void displayConnections() {
         System.out.println("\nCustomer recommendation network:");
-        for (java.util.Map.Entry<Integer, java.util.List<Integer>> entry : adjacencyList.entrySet()) {
-            System.out.println("  Customer " + entry.getKey() + " connected to: " + entry.getValue());
+        for (int vertex = 0; vertex < adjacency.vertexCount(); vertex++) {
+            int customerId = adjacency.id(vertex);
+            System.out.println("  Customer " + customerId + " connected to: " + getRecommendations(customerId));
         }
     }
     
     java.util.List<Integer> getRecommendations(int customerId) {
-        return adjacencyList.getOrDefault(customerId, new java.util.ArrayList<>());
+        java.util.List<Integer> friends = new java.util.ArrayList<>();
+        for (CsrGraph.Cursor it = adjacency.cursor().reset(customerId); it.hasNext(); ) {
+            friends.add(it.next());
+        }
+        return friends;
     }
+
 }
 
 class Request {
     int customerId, movieId;
+    long submittedNanos;
     
     Request(int customerId, int movieId) {
         this.customerId = customerId;
@@ -133,171 +476,401 @@ class Request {
     }
 }
 
-class TreeVisualizationPanel extends JPanel {
+enum RentalStatus {
+    PROCESSED,
+    CUSTOMER_NOT_FOUND,
+    MOVIE_NOT_FOUND,
+    ALREADY_RENTED,
+    WAITLISTED
+}
+
+enum ReturnStatus {
+    RETURNED,
+    RENTAL_NOT_FOUND,
+    ALREADY_RETURNED
+}
+
+class BatchResult {
+    final RentalStatus[] statuses;
+    final int[] counts = new int[RentalStatus.values().length];
+    
+    BatchResult(RentalStatus[] statuses) {
+        this.statuses = statuses;
+        for (RentalStatus status : statuses) {
+            counts[status.ordinal()]++;
+        }
+    }
+    
+    int size() {
+        return statuses.length;
+    }
+    
+    RentalStatus status(int index) {
+        return statuses[index];
+    }
+    
+    int count(RentalStatus status) {
+        return counts[status.ordinal()];
+    }
+    
+    public String toString() {
+        return "Batch of " + statuses.length + ": " + count(RentalStatus.PROCESSED) + " processed, "
+                + count(RentalStatus.CUSTOMER_NOT_FOUND) + " customer not found, "
+                + count(RentalStatus.MOVIE_NOT_FOUND) + " movie not found, "
+                + count(RentalStatus.ALREADY_RENTED) + " already rented, "
+                + count(RentalStatus.WAITLISTED) + " waitlisted";
+    }
+}
+
+class TreeVisualizationPanel extends TiledView {
+    private static final long serialVersionUID = 1L;
     private MovieCategoryTree tree;
     private static final int NODE_WIDTH = 100;
     private static final int NODE_HEIGHT = 60;
     private static final int VERTICAL_SPACING = 80;
     private static final int HORIZONTAL_SPACING = 40;
+    private int capturedVersion = -1;
+    private TreeLayout layout;
 
     TreeVisualizationPanel(MovieCategoryTree tree) {
         this.tree = tree;
-        setPreferredSize(new Dimension(800, 600));
+    }
+
+    synchronized void refresh() {
+        if (tree == null || tree.version == capturedVersion) return;
+        TreeLayout captured = Project.service.exclusive(() -> {
+            capturedVersion = tree.version;
+            return new TreeLayout(tree);
+        });
+        SwingUtilities.invokeLater(() -> show(captured));
+    }
+
+    void show(TreeLayout captured) {
+        boolean first = layout == null;
+        layout = captured;
+        if (first) {
+            resetView();
+        } else {
+            contentChanged();
+        }
+        repaint();
+    }
+
+    @Override
+    Rectangle2D contentBounds() {
+        if (layout == null || layout.size == 0) return null;
+        return new Rectangle2D.Double(-NODE_WIDTH, -NODE_HEIGHT, layout.xs[layout.size - 1] + 2 * NODE_WIDTH,
+                layout.height * VERTICAL_SPACING + 2 * NODE_HEIGHT);
+    }
+
+    @Override
+    String emptyMessage() {
+        return "No tree data to display";
     }
 
     @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
+    void renderTile(Graphics2D g2d, Rectangle2D visible, double scale) {
+        TreeLayout current = layout;
+        g2d.scale(scale, scale);
+        g2d.translate(-visible.getMinX(), -visible.getMinY());
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        if (tree != null && tree.root != null) {
-            drawTree(g2d, tree.root, getWidth() / 2, 50, 0, getWidth() / 4);
-        } else {
-            g2d.drawString("No tree data to display", getWidth() / 2 - 50, getHeight() / 2);
+        int first = current.firstAtOrAfter(visible.getMinX() - NODE_WIDTH / 2.0);
+        g2d.setColor(Color.BLACK);
+        for (int chain : new int[] {first - 1, first}) {
+            for (int node = chain; node >= 0 && current.parents[node] >= 0; node = current.parents[node]) {
+                drawEdge(g2d, current, node);
+            }
+        }
+        for (int node = first; node < current.size && current.xs[node] - NODE_WIDTH / 2.0 <= visible.getMaxX(); node++) {
+            if (current.ys[node] + NODE_HEIGHT / 2.0 + VERTICAL_SPACING < visible.getMinY()
+                    || current.ys[node] - NODE_HEIGHT / 2.0 - VERTICAL_SPACING > visible.getMaxY()) {
+                continue;
+            }
+            drawEdge(g2d, current, node);
+            drawNode(g2d, current, node, scale);
         }
     }
 
-    private void drawTree(Graphics2D g2d, CategoryNode node, int x, int y, int level, int xOffset) {
-        if (node == null) return;
+    private void drawEdge(Graphics2D g2d, TreeLayout current, int node) {
+        int parent = current.parents[node];
+        if (parent < 0) return;
+        g2d.setColor(Color.BLACK);
+        g2d.drawLine(current.xs[parent], current.ys[parent] + NODE_HEIGHT / 2, current.xs[node], current.ys[node] - NODE_HEIGHT / 2);
+    }
 
-        String nodeText = node.genre + " (" + (node.movies != null ? node.movies.size() : 0) + " movies)";
+    private void drawNode(Graphics2D g2d, TreeLayout current, int node, double scale) {
+        int x = current.xs[node];
+        int y = current.ys[node];
         g2d.setColor(Color.LIGHT_GRAY);
         g2d.fillRect(x - NODE_WIDTH / 2, y - NODE_HEIGHT / 2, NODE_WIDTH, NODE_HEIGHT);
         g2d.setColor(Color.BLACK);
         g2d.drawRect(x - NODE_WIDTH / 2, y - NODE_HEIGHT / 2, NODE_WIDTH, NODE_HEIGHT);
-        g2d.drawString(nodeText, x - NODE_WIDTH / 2 + 10, y - 10);
-        if (node.movies != null) {
-            for (int i = 0; i < node.movies.size() && i < 2; i++) {
-                g2d.drawString("- " + node.movies.get(i).title, x - NODE_WIDTH / 2 + 10, y + 10 + i * 15);
-            }
+        if (scale < 0.4) return;
+        String[] lines = current.lines[node];
+        g2d.drawString(lines[0], x - NODE_WIDTH / 2 + 10, y - 10);
+        for (int i = 1; i < lines.length; i++) {
+            g2d.drawString(lines[i], x - NODE_WIDTH / 2 + 10, y + 10 + (i - 1) * 15);
         }
+    }
+
+    static class TreeLayout {
+        final int size;
+        final int height;
+        final int[] xs;
+        final int[] ys;
+        final int[] parents;
+        final String[][] lines;
 
-        if (node.left != null) {
-            int leftX = x - xOffset;
-            int leftY = y + VERTICAL_SPACING;
-            g2d.drawLine(x, y + NODE_HEIGHT / 2, leftX, leftY - NODE_HEIGHT / 2);
-            drawTree(g2d, node.left, leftX, leftY, level + 1, xOffset / 2);
+        TreeLayout(MovieCategoryTree tree) {
+            java.util.IdentityHashMap<CategoryNode, Integer> index = new java.util.IdentityHashMap<>();
+            java.util.List<CategoryNode> nodes = new java.util.ArrayList<>();
+            for (CategoryNode node : tree) {
+                index.put(node, nodes.size());
+                nodes.add(node);
+            }
+            size = nodes.size();
+            xs = new int[size];
+            ys = new int[size];
+            parents = new int[size];
+            lines = new String[size][];
+            int deepest = 0;
+            for (int i = 0; i < size; i++) {
+                CategoryNode node = nodes.get(i);
+                int depth = 0;
+                for (CategoryNode up = node.parent; up != null; up = up.parent) depth++;
+                deepest = Math.max(deepest, depth);
+                xs[i] = i * (NODE_WIDTH + HORIZONTAL_SPACING);
+                ys[i] = depth * VERTICAL_SPACING;
+                parents[i] = node.parent == null ? -1 : index.get(node.parent);
+                int shown = Math.min(2, node.movies.size());
+                lines[i] = new String[shown + 1];
+                lines[i][0] = node.genre + " (" + node.movies.size() + " movies)";
+                for (int m = 0; m < shown; m++) lines[i][m + 1] = "- " + node.movies.get(m).title();
+            }
+            height = deepest;
         }
 
-        if (node.right != null) {
-            int rightX = x + xOffset;
-            int rightY = y + VERTICAL_SPACING;
-            g2d.drawLine(x, y + NODE_HEIGHT / 2, rightX, rightY - NODE_HEIGHT / 2);
-            drawTree(g2d, node.right, rightX, rightY, level + 1, xOffset / 2);
+        int firstAtOrAfter(double x) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (xs[middle] < x) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
         }
     }
 }
 
-class GraphVisualizationPanel extends JPanel {
+class GraphVisualizationPanel extends TiledView {
+    private static final long serialVersionUID = 1L;
     private RecommendationGraph graph;
-    private Customer head;
-    private static final int NODE_RADIUS = 30;
-    private static final double CIRCLE_RADIUS = 200;
+    private IntObjectMap<Customer> customerIndex;
+    private static final float NODE_RADIUS = 30;
+    private static final int LAYOUT_STEPS = Integer.getInteger("rental.view.layoutSteps", 60);
+    private static final int REFINE_STEPS = Integer.getInteger("rental.view.refineSteps", 15);
+    private static final java.util.concurrent.ExecutorService layoutWorker = java.util.concurrent.Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "graph-layout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final java.util.concurrent.atomic.AtomicReference<GraphLayout> pending = new java.util.concurrent.atomic.AtomicReference<>();
+    private volatile GraphLayout computed;
+    private long capturedModifications = -1;
+    private GraphLayout layout;
+    private java.awt.image.BufferedImage sprite;
 
-    GraphVisualizationPanel(RecommendationGraph graph, Customer head) {
+    GraphVisualizationPanel(RecommendationGraph graph, IntObjectMap<Customer> customerIndex) {
         this.graph = graph;
-        this.head = head;
-        setPreferredSize(new Dimension(800, 600));
+        this.customerIndex = customerIndex;
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    synchronized void refresh() {
+        CsrGraph adjacency = graph.adjacency;
+        if (adjacency.modifications() == capturedModifications) return;
+        GraphLayout captured = Project.service.exclusive(() -> {
+            capturedModifications = adjacency.modifications();
+            return GraphLayout.capture(adjacency, customerIndex);
+        });
+        if (pending.getAndSet(captured) == null) layoutWorker.execute(this::layOutPending);
+    }
 
-        if (graph.adjacencyList.isEmpty()) {
-            g2d.drawString("No graph data to display", getWidth() / 2 - 50, getHeight() / 2);
-            return;
+    private void layOutPending() {
+        GraphLayout next;
+        while ((next = pending.getAndSet(null)) != null) {
+            next.layOut(computed, LAYOUT_STEPS, REFINE_STEPS);
+            computed = next;
+            GraphLayout published = next;
+            SwingUtilities.invokeLater(() -> show(published));
         }
+    }
 
-        java.util.Map<Integer, java.awt.Point> positions = new java.util.HashMap<>();
-        int centerX = getWidth() / 2;
-        int centerY = getHeight() / 2;
-        java.util.List<Integer> customers = new java.util.ArrayList<>(graph.adjacencyList.keySet());
-        int n = customers.size();
-        if (n == 0) {
-            g2d.drawString("No customers to display", getWidth() / 2 - 50, getHeight() / 2);
-            return;
-        }
-        for (int i = 0; i < n; i++) {
-            double angle = 2 * Math.PI * i / n;
-            int x = (int) (centerX + CIRCLE_RADIUS * Math.cos(angle));
-            int y = (int) (centerY + CIRCLE_RADIUS * Math.sin(angle));
-            positions.put(customers.get(i), new java.awt.Point(x, y));
-        }
-
-        g2d.setColor(Color.BLUE);
-        for (java.util.Map.Entry<Integer, java.util.List<Integer>> entry : graph.adjacencyList.entrySet()) {
-            int customer1 = entry.getKey();
-            java.awt.Point p1 = positions.get(customer1);
-            for (int customer2 : entry.getValue()) {
-                java.awt.Point p2 = positions.get(customer2);
-                if (p1 != null && p2 != null) {
-                    g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
-                }
-            }
+    void show(GraphLayout next) {
+        boolean first = layout == null;
+        layout = next;
+        if (first) {
+            resetView();
+        } else {
+            contentChanged();
         }
+        repaint();
+    }
 
-        for (int customerId : customers) {
-            java.awt.Point p = positions.get(customerId);
-            if (p != null) {
-                g2d.setColor(Color.YELLOW);
-                g2d.fillOval(p.x - NODE_RADIUS, p.y - NODE_RADIUS, 2 * NODE_RADIUS, 2 * NODE_RADIUS);
-                g2d.setColor(Color.BLACK);
-                g2d.drawOval(p.x - NODE_RADIUS, p.y - NODE_RADIUS, 2 * NODE_RADIUS, 2 * NODE_RADIUS);
-                Customer customer = findCustomer(customerId);
-                String label = customer != null ? customerId + ": " + customer.name : String.valueOf(customerId);
-                g2d.drawString(label, p.x - NODE_RADIUS / 2, p.y);
+    @Override
+    Rectangle2D contentBounds() {
+        if (layout == null || layout.vertexCount == 0) return null;
+        return new Rectangle2D.Float(layout.minX - NODE_RADIUS, layout.minY - NODE_RADIUS,
+                layout.maxX - layout.minX + 2 * NODE_RADIUS, layout.maxY - layout.minY + 2 * NODE_RADIUS);
+    }
+
+    @Override
+    String emptyMessage() {
+        return layout == null && computed == null && pending.get() != null ? "Computing layout..." : "No graph data to display";
+    }
+
+    @Override
+    void renderTile(Graphics2D g2d, Rectangle2D visible, double scale) {
+        GraphLayout current = layout;
+        float originX = (float) visible.getMinX();
+        float originY = (float) visible.getMinY();
+        float left = originX - NODE_RADIUS;
+        float top = originY - NODE_RADIUS;
+        float right = (float) visible.getMaxX() + NODE_RADIUS;
+        float bottom = (float) visible.getMaxY() + NODE_RADIUS;
+        int radius = (int) Math.round(NODE_RADIUS * scale);
+        boolean detailed = radius >= 4;
+        g2d.setColor(detailed ? Color.BLUE : new Color(150, 150, 255));
+        current.visitEdges(left, top, right, bottom, edge -> {
+            int v1 = current.source(edge);
+            int v2 = current.targets[edge];
+            g2d.drawLine((int) ((current.xs[v1] - originX) * scale), (int) ((current.ys[v1] - originY) * scale),
+                    (int) ((current.xs[v2] - originX) * scale), (int) ((current.ys[v2] - originY) * scale));
+        });
+
+        int dot = Math.max(1, radius);
+        java.awt.image.BufferedImage sprite = detailed ? nodeSprite(radius) : null;
+        if (detailed) g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setColor(detailed ? Color.BLACK : Color.ORANGE);
+        current.visitNodes(left, top, right, bottom, v -> {
+            int x = (int) ((current.xs[v] - originX) * scale);
+            int y = (int) ((current.ys[v] - originY) * scale);
+            if (!detailed) {
+                g2d.fillRect(x - dot, y - dot, 2 * dot, 2 * dot);
+                return;
             }
-        }
+            g2d.drawImage(sprite, x - radius - 1, y - radius - 1, null);
+            if (radius >= 12) g2d.drawString(current.labels[v], x - radius / 2, y);
+        });
     }
 
-    private Customer findCustomer(int id) {
-        Customer current = head;
-        while (current != null) {
-            if (current.id == id) return current;
-            current = current.next;
-        }
-        return null;
+    private java.awt.image.BufferedImage nodeSprite(int radius) {
+        if (sprite != null && sprite.getWidth() == 2 * radius + 3) return sprite;
+        sprite = new java.awt.image.BufferedImage(2 * radius + 3, 2 * radius + 3, java.awt.image.BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sprite.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.YELLOW);
+        g.fillOval(1, 1, 2 * radius, 2 * radius);
+        g.setColor(Color.BLACK);
+        g.drawOval(1, 1, 2 * radius, 2 * radius);
+        g.dispose();
+        return sprite;
     }
 }
 
 public class Project {
+    static StringPool strings = new StringPool();
+    static GenreDictionary genres = new GenreDictionary();
     static Customer head = null;
     static java.util.ArrayList<Movie> movies = new java.util.ArrayList<>();
-    static java.util.Queue<Request> queue = new java.util.LinkedList<>();
-    static java.util.Stack<String> history = new java.util.Stack<>();
+    static IntObjectMap<Customer> customerIndex = new IntObjectMap<>();
+    static IntObjectMap<Movie> movieIndex = new IntObjectMap<>();
+    static java.util.Deque<Request> queue = new java.util.LinkedList<>();
+    static RentalLedger history = new RentalLedger();
     static MovieCategoryTree categoryTree = new MovieCategoryTree();
     static RecommendationGraph recommendationGraph = new RecommendationGraph();
+    static MovieQueryIndex movieSearch = new MovieQueryIndex();
+    static RentalService service = new RentalService();
+    static GraphAnalytics graphAnalytics = new GraphAnalytics(recommendationGraph, service.writeLock());
+    static RecommendationEngine recommender = new RecommendationEngine(recommendationGraph, history, graphAnalytics);
+    static DueScheduler dueDates = new DueScheduler();
+    static java.util.concurrent.atomic.LongAdder waitlisted = new java.util.concurrent.atomic.LongAdder();
+    static TransactionLog transactions = new TransactionLog(Integer.getInteger("rental.undoRecords", 1 << 20));
+    static final long LOAN_PERIOD_MILLIS = Long.getLong("rental.loanPeriodMs", 3L * 24 * 60 * 60 * 1000);
+    static final long AUTO_RELEASE_MILLIS = Long.getLong("rental.autoReleaseMs", 7L * 24 * 60 * 60 * 1000);
+    static final long VIEW_REFRESH_MILLIS = Long.getLong("rental.view.refreshMs", 500);
     static java.util.Scanner scanner = new java.util.Scanner(System.in);
     static JFrame visualizationFrame = null;
+    static TreeVisualizationPanel treePanel;
+    static GraphVisualizationPanel graphPanel;
+    static RentalJournal journal = null;
+    static MappedCatalog catalog = null;
+    static java.util.concurrent.atomic.AtomicReferenceArray<Movie> catalogMovies = null;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         System.out.println("=== Advanced Movie Rental System ===");
         System.out.println("Data Structures: LinkedList, ArrayList, Queue, Stack, Tree, Graph\n");
+        openCatalog();
+        openJournal();
+        Metrics.startFromProperties();
+        startDueDateChecker();
+        startServer();
         
         while (true) {
+            service.checkpointIfDue();
             showMenu();
-            int choice = getIntInput("Enter choice: ");
-            
-            switch (choice) {
-                case 1: addCustomer(); break;
-                case 2: addMovie(); break;
-                case 3: enqueueRental(); break;
-                case 4: processRequest(); break;
-                case 5: displayCustomers(); break;
-                case 6: displayMovies(); break;
-                case 7: displayCategories(); break;
-                case 8: addConnection(); break;
-                case 9: showRecommendations(); break;
-                case 10: undoRental(); break;
-                case 11: showHistory(); break;
-                case 12: exitSystem(); break;
-                case 13: visualizeTree(); break;
-                case 14: visualizeGraph(); break;
-                default: System.out.println("Invalid choice");
-            }
+            handleChoice(getIntInput("Enter choice: "));
+        }
+    }
+
+    static void handleChoice(int choice) {
+        switch (choice) {
+            case 1: addCustomer(); break;
+            case 2: addMovie(); break;
+            case 3: enqueueRental(); break;
+            case 4: processRequest(); break;
+            case 5: displayCustomers(); break;
+            case 6: displayMovies(); break;
+            case 7: displayCategories(); break;
+            case 8: addConnection(); break;
+            case 9: showRecommendations(); break;
+            case 10: undoOperation(); break;
+            case 11: showHistory(); break;
+            case 12: exitSystem(); break;
+            case 13: visualizeTree(); break;
+            case 14: visualizeGraph(); break;
+            case 15: processAllRequests(); break;
+            case 16: exportCatalog(); break;
+            case 17: searchMovies(); break;
+            case 18: showGraphAnalytics(); break;
+            case 19: showMetrics(); break;
+            case 20: returnMovie(); break;
+            case 21: showOverdueRentals(); break;
+            case 22: addMovieCopies(); break;
+            case 23: redoOperation(); break;
+            case 24: undoRentalById(); break;
+            case 25: importData(); break;
+            case 26: exportListing(); break;
+            default: System.out.println("Invalid choice");
+        }
+    }
+    
+    static void startServer() {
+        Integer port = Integer.getInteger("rental.port");
+        if (port == null) return;
+        try {
+            RentalServer server = new RentalServer(service, port, Runtime.getRuntime().availableProcessors() * 2);
+            server.start();
+            System.out.println("Command server listening on " + server.address());
+        } catch (java.io.IOException e) {
+            System.out.println("Could not start command server on port " + port + ": " + e.getMessage());
         }
     }
     
@@ -312,11 +885,23 @@ public class Project {
         System.out.println("7. Display Movie Categories");
         System.out.println("8. Add Friend Connection");
         System.out.println("9. Show Movie Recommendations");
-        System.out.println("10. Undo Last Rental");
+        System.out.println("10. Undo Last Operation");
         System.out.println("11. View Rental History");
         System.out.println("12. Exit System");
         System.out.println("13. Visualize Movie Category Tree");
         System.out.println("14. Visualize Recommendation Graph");
+        System.out.println("15. Process All Pending Rentals");
+        System.out.println("16. Export Movie Catalog");
+        System.out.println("17. Search Movies");
+        System.out.println("18. Show Customer Communities");
+        System.out.println("19. Show Runtime Metrics");
+        System.out.println("20. Return Movie");
+        System.out.println("21. Show Overdue Rentals");
+        System.out.println("22. Add Movie Copies");
+        System.out.println("23. Redo Last Undone Operation");
+        System.out.println("24. Undo Rental by ID");
+        System.out.println("25. Import Data Directory");
+        System.out.println("26. Export Listing to File");
     }
     
     static void addCustomer() {
@@ -324,11 +909,19 @@ public class Project {
         int id = getIntInput("Enter customer ID: ");
         String name = getStringInput("Enter customer name: ");
         
+        System.out.println(service.addCustomer(id, name).message);
+    }
+    
+    static Customer registerCustomer(int id, String name) {
         Customer newCustomer = new Customer(id, name);
         newCustomer.next = head;
         head = newCustomer;
+        customerIndex.put(id, newCustomer);
         recommendationGraph.addCustomer(id);
-        System.out.println("Customer added: " + newCustomer);
+        graphAnalytics.customerAdded();
+        if (journal != null) journal.logAddCustomer(id, name);
+        recordTransaction(TransactionLog.CUSTOMER_ADDED, id, 0, 0, name);
+        return newCustomer;
     }
     
     static void addMovie() {
@@ -337,10 +930,90 @@ public class Project {
         String title = getStringInput("Enter movie title: ");
         String genre = getStringInput("Enter movie genre: ");
         
+        System.out.println(service.addMovie(id, title, genre).message);
+    }
+    
+    static Movie registerMovie(int id, String title, String genre) {
         Movie movie = new Movie(id, title, genre);
         movies.add(movie);
+        movieIndex.putIfAbsent(id, movie);
         categoryTree.addMovie(movie);
-        System.out.println("Movie added: " + movie);
+        movieSearch.add(movie);
+        if (journal != null) journal.logAddMovie(id, title, genre);
+        recordTransaction(TransactionLog.MOVIE_ADDED, id, 0, 0, movie);
+        return movie;
+    }
+    
+    static int bulkAddCustomers(int[] ids, java.util.function.IntUnaryOperator names, int count) {
+        int added = 0;
+        for (int i = 0; i < count; i++) {
+            if (customerIndex.containsKey(ids[i])) continue;
+            Customer customer = new Customer(ids[i], names.applyAsInt(i));
+            customer.next = head;
+            head = customer;
+            customerIndex.put(ids[i], customer);
+            recommendationGraph.addCustomer(ids[i]);
+            added++;
+        }
+        if (added > 0) graphAnalytics.customerAdded();
+        return added;
+    }
+    
+    static int bulkAddMovies(int[] ids, java.util.function.IntUnaryOperator titles, int[] genres, int count) {
+        java.util.List<Movie> added = new java.util.ArrayList<>(count);
+        movies.ensureCapacity(movies.size() + count);
+        for (int i = 0; i < count; i++) {
+            if (movieIndex.containsKey(ids[i])) continue;
+            Movie movie = new Movie(ids[i], titles.applyAsInt(i), genres[i]);
+            movies.add(movie);
+            movieIndex.put(ids[i], movie);
+            movieSearch.add(movie);
+            added.add(movie);
+        }
+        categoryTree.addMovies(added);
+        return added.size();
+    }
+    
+    static int bulkConnect(int[] first, int[] second, int count) {
+        int added = 0;
+        for (int i = 0; i < count; i++) {
+            if (first[i] == second[i] || !customerIndex.containsKey(first[i]) || !customerIndex.containsKey(second[i])) continue;
+            if (recommendationGraph.addConnection(first[i], second[i])) added++;
+        }
+        if (added > 0) {
+            graphAnalytics.invalidate();
+            recommender.invalidateAll();
+        }
+        return added;
+    }
+    
+    static int bulkRent(int[] customerIds, int[] movieIds, int count) {
+        int rented = 0;
+        long timestamp = System.currentTimeMillis();
+        long dueAt = timestamp + LOAN_PERIOD_MILLIS;
+        synchronized (history) {
+            history.ensureCapacity(history.size() + count);
+            for (int i = 0; i < count; i++) {
+                if (!customerIndex.containsKey(customerIds[i])) continue;
+                Movie movie = findMovie(movieIds[i]);
+                if (movie == null || movie.hasWaiters() || !movie.tryRent()) continue;
+                int entry = history.append(customerIds[i], movie.id, timestamp, dueAt);
+                dueDates.schedule(entry, dueAt, DueScheduler.DUE);
+                movieSearch.rentedChanged(movie);
+                rented++;
+            }
+        }
+        if (rented > 0) recommender.invalidateAll();
+        Metrics.rentalsImported.add(rented);
+        return rented;
+    }
+    
+    static void addMovieCopies() {
+        System.out.println("\n--- Add Movie Copies ---");
+        int id = getIntInput("Enter movie ID: ");
+        int count = getIntInput("Enter number of copies to add: ");
+        
+        System.out.println(service.addCopies(id, count).message);
     }
     
     static void enqueueRental() {
@@ -348,37 +1021,208 @@ public class Project {
         int customerId = getIntInput("Enter customer ID: ");
         int movieId = getIntInput("Enter movie ID: ");
         
-        queue.add(new Request(customerId, movieId));
-        System.out.println("Request added to queue");
+        System.out.println(service.enqueueRental(customerId, movieId).message);
+    }
+    
+    static void submitRequest(Request req) {
+        queue.add(req);
+        Metrics.requestsEnqueued.increment();
+        if (journal != null) journal.logEnqueue(req.customerId, req.movieId);
+        recordTransaction(TransactionLog.ENQUEUED, req.customerId, req.movieId, 0, null);
+    }
+    
+    static Request nextRequest() {
+        Request req = queue.poll();
+        if (req == null) return null;
+        Metrics.requestsDequeued.increment();
+        if (journal != null) journal.logDequeue();
+        recordTransaction(TransactionLog.DEQUEUED, req.customerId, req.movieId, 0, null);
+        return req;
     }
     
     static void processRequest() {
-        if (queue.isEmpty()) {
-            System.out.println("\nNo pending requests");
-            return;
+        ServiceResult<RentalStatus> result = service.processRequest();
+        System.out.println(result.value == null ? "\n" + result.message : result.message);
+    }
+    
+    static void processAllRequests() {
+        ServiceResult<BatchResult> result = service.processAll();
+        System.out.println("\n" + (result.ok ? result.value : result.message));
+    }
+    
+    static BatchResult processBatch(java.util.stream.Stream<Request> requests) {
+        return processBatch(requests.collect(java.util.stream.Collectors.toList()));
+    }
+    
+    static BatchResult processBatch(java.util.List<Request> requests) {
+        int n = requests.size();
+        RentalStatus[] statuses = new RentalStatus[n];
+        Request[] accepted = new Request[n];
+        Customer[] customers = new Customer[n];
+        Movie[] targets = new Movie[n];
+        
+        int index = 0;
+        for (Request req : requests) {
+            Customer customer = findCustomer(req.customerId);
+            Movie movie = customer == null ? null : findMovie(req.movieId);
+            if (customer == null) {
+                statuses[index] = RentalStatus.CUSTOMER_NOT_FOUND;
+            } else if (movie == null) {
+                statuses[index] = RentalStatus.MOVIE_NOT_FOUND;
+            } else {
+                accepted[index] = req;
+                customers[index] = customer;
+                targets[index] = movie;
+            }
+            index++;
         }
         
-        Request req = queue.poll();
+        long timestamp = System.currentTimeMillis();
+        synchronized (history) {
+            history.ensureCapacity(history.size() + n);
+            transactions.begin();
+            try {
+                for (int i = 0; i < n; i++) {
+                    if (targets[i] == null) continue;
+                    if (!targets[i].hasWaiters() && targets[i].tryRent()) {
+                        recordRental(customers[i].id, targets[i], timestamp);
+                        statuses[i] = RentalStatus.PROCESSED;
+                    } else {
+                        park(accepted[i], targets[i]);
+                        statuses[i] = RentalStatus.WAITLISTED;
+                    }
+                }
+            } finally {
+                transactions.commit();
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (statuses[i] == RentalStatus.PROCESSED) recommender.rentalChanged(customers[i].id);
+        }
+        BatchResult result = new BatchResult(statuses);
+        Metrics.rentals(result);
+        return result;
+    }
+    
+    static RentalStatus rent(Request req) {
+        RentalStatus status = attemptRental(req, false);
+        Metrics.rental(status);
+        return status;
+    }
+    
+    static RentalStatus rentOrWait(Request req) {
+        RentalStatus status = attemptRental(req, true);
+        Metrics.rental(status);
+        return status;
+    }
+    
+    private static RentalStatus attemptRental(Request req, boolean wait) {
         Customer customer = findCustomer(req.customerId);
+        if (customer == null) return RentalStatus.CUSTOMER_NOT_FOUND;
         Movie movie = findMovie(req.movieId);
+        if (movie == null) return RentalStatus.MOVIE_NOT_FOUND;
+        if (movie.hasWaiters() || !movie.tryRent()) {
+            if (!wait) return RentalStatus.ALREADY_RENTED;
+            park(req, movie);
+            return RentalStatus.WAITLISTED;
+        }
         
-        if (customer == null) {
-            System.out.println("Customer not found");
-            return;
+        synchronized (history) {
+            recordRental(customer.id, movie, System.currentTimeMillis());
         }
-        if (movie == null) {
-            System.out.println("Movie not found");
-            return;
+        recommender.rentalChanged(customer.id);
+        return RentalStatus.PROCESSED;
+    }
+    
+    private static int recordRental(int customerId, Movie movie, long timestamp) {
+        long dueAt = timestamp + LOAN_PERIOD_MILLIS;
+        int entry = history.append(customerId, movie.id, timestamp, dueAt);
+        dueDates.schedule(entry, dueAt, DueScheduler.DUE);
+        movieSearch.rentedChanged(movie);
+        if (journal != null) journal.logRental(customerId, movie.id, timestamp, dueAt);
+        transactions.record(TransactionLog.RENTED, entry, 0, 0, null);
+        return entry;
+    }
+    
+    private static void park(Request req, Movie movie) {
+        synchronized (history) {
+            transactions.begin();
+            try {
+                if (journal != null) journal.logWaitlist(req.customerId, movie.id);
+                movie.waitlist().add(req);
+                waitlisted.increment();
+                Metrics.waitlistParked.increment();
+                transactions.record(TransactionLog.PARKED, req.customerId, movie.id, 0, null);
+                drainWaitlist(movie);
+            } finally {
+                transactions.commit();
+            }
         }
-        if (movie.rented) {
-            System.out.println("Movie already rented");
-            return;
+    }
+    
+    static int drainWaitlist(Movie movie) {
+        java.util.concurrent.ConcurrentLinkedDeque<Request> waitlist = movie.waitlist;
+        if (waitlist == null) return 0;
+        int fulfilled = 0;
+        synchronized (history) {
+            while (!waitlist.isEmpty() && movie.tryRent()) {
+                Request next = waitlist.poll();
+                if (next == null) {
+                    movie.release();
+                    break;
+                }
+                waitlisted.decrement();
+                transactions.record(TransactionLog.UNPARKED, next.customerId, movie.id, 0, null);
+                recordRental(next.customerId, movie, System.currentTimeMillis());
+                recommender.rentalChanged(next.customerId);
+                fulfilled++;
+            }
+        }
+        if (fulfilled > 0) Metrics.waitlistFulfilled.add(fulfilled);
+        return fulfilled;
+    }
+    
+    static void drainWaitlists() {
+        for (Movie movie : movies) {
+            drainWaitlist(movie);
+        }
+        for (int row = 0; catalogMovies != null && row < catalogMovies.length(); row++) {
+            Movie movie = catalogMovies.get(row);
+            if (movie != null) drainWaitlist(movie);
+        }
+    }
+    
+    static void addCopies(Movie movie, int count) {
+        synchronized (history) {
+            transactions.begin();
+            try {
+                growCopies(movie, count);
+                transactions.record(TransactionLog.COPIES_ADDED, movie.id, count, 0, null);
+                drainWaitlist(movie);
+            } finally {
+                transactions.commit();
+            }
         }
-        
-        movie.rented = true;
-        String record = customer.name + " rented " + movie.title;
-        history.push(record);
-        System.out.println("Processed: " + record);
+    }
+    
+    static boolean removeCopies(Movie movie, int count) {
+        synchronized (history) {
+            if (!movie.removeCopies(count)) return false;
+            movieSearch.rentedChanged(movie);
+            if (journal != null) journal.logAddCopies(movie.id, -count);
+            return true;
+        }
+    }
+    
+    static int waitlistPosition(Movie movie, int customerId) {
+        java.util.concurrent.ConcurrentLinkedDeque<Request> waitlist = movie.waitlist;
+        if (waitlist == null) return -1;
+        int position = 1;
+        for (Request req : waitlist) {
+            if (req.customerId == customerId) return position;
+            position++;
+        }
+        return -1;
     }
     
     static void displayCustomers() {
@@ -387,32 +1231,143 @@ public class Project {
             System.out.println("No customers found");
             return;
         }
-        
-        Customer current = head;
-        while (current != null) {
-            System.out.println(current);
-            current = current.next;
-        }
+        showListing(Listings.View.CUSTOMERS);
     }
     
     static void displayMovies() {
         System.out.println("\n--- Movie Inventory ---");
-        if (movies.isEmpty()) {
+        if (movies.isEmpty() && catalogSize() == 0) {
             System.out.println("No movies found");
             return;
         }
-        
-        for (Movie movie : movies) {
-            System.out.println(movie);
-        }
+        showListing(Listings.View.MOVIES);
     }
     
     static void displayCategories() {
-        if (movies.isEmpty()) {
+        if (movies.isEmpty() && catalogSize() == 0) {
             System.out.println("\nNo movies in categories");
             return;
         }
-        categoryTree.displayByGenre();
+        System.out.println("\nMovies organized by genre:");
+        showListing(Listings.View.GENRES);
+    }
+    
+    static void showListing(Listings.View view) {
+        java.io.Writer out = new java.io.BufferedWriter(new java.io.OutputStreamWriter(System.out), 1 << 16);
+        String cursor = null;
+        while (true) {
+            ServiceResult<Listings.Page> page = service.list(view, cursor, Listings.PAGE_SIZE, out);
+            try {
+                out.flush();
+            } catch (java.io.IOException e) {
+                return;
+            }
+            if (!page.ok) {
+                System.out.println(page.message);
+                return;
+            }
+            if (page.value.next == null) return;
+            String answer = getStringInput("-- more (cursor " + page.value.next + "): Enter for the next page, a cursor to jump, q to stop: ");
+            if (answer.equalsIgnoreCase("q")) return;
+            cursor = answer.isEmpty() ? page.value.next : answer;
+        }
+    }
+    
+    static void exportListing() {
+        System.out.println("\n--- Export Listing ---");
+        String view = getStringInput("Listing [h]istory/[m]ovies/[c]ustomers/[g]enres: ").toLowerCase(java.util.Locale.ROOT);
+        Listings.View selected;
+        switch (view.isEmpty() ? ' ' : view.charAt(0)) {
+            case 'h': selected = Listings.View.HISTORY; break;
+            case 'm': selected = Listings.View.MOVIES; break;
+            case 'c': selected = Listings.View.CUSTOMERS; break;
+            case 'g': selected = Listings.View.GENRES; break;
+            default:
+                System.out.println("Unknown listing: " + view);
+                return;
+        }
+        String file = getStringInput("Enter output file path: ");
+        System.out.println(service.exportListing(selected, java.nio.file.Paths.get(file)).message);
+    }
+    
+    static void searchMovies() {
+        System.out.println("\n--- Search Movies ---");
+        String genre = getStringInput("Genre (blank for any): ");
+        String prefix = getStringInput("Title starts with (blank for any): ");
+        String availability = getStringInput("Availability [a]vailable/[r]ented (blank for any): ");
+        
+        MovieQueryIndex.Query query = movieSearch.query();
+        if (!genre.isEmpty()) query.inGenre(genre);
+        if (!prefix.isEmpty()) query.titleStartsWith(prefix);
+        if (availability.startsWith("a")) query.available();
+        if (availability.startsWith("r")) query.rented();
+        
+        ServiceResult<MovieQueryIndex.Matches> found = service.searchMovies(query, 50);
+        if (!found.ok) {
+            System.out.println(found.message);
+            return;
+        }
+        int total = found.value.total;
+        System.out.println(found.message + ":");
+        for (Movie movie : found.value.movies) {
+            System.out.println("  " + movie);
+        }
+        if (total > 50) {
+            System.out.println("  ... and " + (total - 50) + " more");
+        }
+    }
+    
+    static int catalogSize() {
+        return catalog == null ? 0 : catalog.size();
+    }
+    
+    static String describeCatalogRow(int row) {
+        Movie movie = catalogMovies.get(row);
+        return movie != null ? movie.toString() : catalog.describe(row);
+    }
+    
+    static Movie catalogMovie(int id) {
+        int row = catalog.find(id);
+        if (row < 0) return null;
+        
+        Movie movie = catalogMovies.get(row);
+        if (movie == null) {
+            Movie loaded = catalog.materialize(row);
+            movie = catalogMovies.compareAndExchange(row, null, loaded);
+            if (movie == null) movie = loaded;
+        }
+        return movie;
+    }
+    
+    static void openCatalog() {
+        String path = System.getProperty("rental.catalog");
+        if (path == null) return;
+        
+        try {
+            long start = System.nanoTime();
+            catalog = MappedCatalog.open(java.nio.file.Paths.get(path));
+            catalogMovies = new java.util.concurrent.atomic.AtomicReferenceArray<>(catalog.size());
+            System.out.printf("Mapped catalog of %d movies in %d genres in %d ms%n",
+                    catalog.size(), catalog.genreCount(), (System.nanoTime() - start) / 1_000_000);
+        } catch (java.io.IOException e) {
+            System.out.println("Could not open catalog " + path + ": " + e.getMessage());
+        }
+    }
+    
+    static void exportCatalog() {
+        System.out.println("\n--- Export Movie Catalog ---");
+        String path = getStringInput("Enter catalog file path: ");
+        
+        System.out.println(service.exportCatalog(java.nio.file.Paths.get(path)).message);
+    }
+    
+    static java.util.List<Movie> catalogMovies() {
+        java.util.List<Movie> all = new java.util.ArrayList<>(movies);
+        for (int row = 0; row < catalogSize(); row++) {
+            Movie movie = catalogMovies.get(row);
+            all.add(movie != null ? movie : catalog.materialize(row));
+        }
+        return all;
     }
     
     static void addConnection() {
@@ -420,70 +1375,132 @@ public class Project {
         int id1 = getIntInput("Enter first customer ID: ");
         int id2 = getIntInput("Enter second customer ID: ");
         
-        if (findCustomer(id1) == null || findCustomer(id2) == null) {
-            System.out.println("One or both customers not found");
-            return;
-        }
-        
-        recommendationGraph.addConnection(id1, id2);
-        System.out.println("Connection added between customers " + id1 + " and " + id2);
+        System.out.println(service.connect(id1, id2).message);
+    }
+    
+    static void connectCustomers(int id1, int id2) {
+        boolean added = linkCustomers(id1, id2);
+        recommender.connectionAdded(id1, id2);
+        if (added) recordTransaction(TransactionLog.CONNECTED, id1, id2, 0, null);
+    }
+    
+    private static boolean linkCustomers(int id1, int id2) {
+        boolean added = recommendationGraph.addConnection(id1, id2);
+        if (added) graphAnalytics.connectionAdded(id1, id2);
+        if (journal != null) journal.logConnection(id1, id2);
+        return added;
+    }
+    
+    private static boolean unlinkCustomers(int id1, int id2) {
+        boolean removed = recommendationGraph.removeConnection(id1, id2);
+        if (removed) graphAnalytics.connectionRemoved();
+        if (journal != null) journal.logDisconnect(id1, id2);
+        return removed;
     }
     
     static void showRecommendations() {
         System.out.println("\n--- Movie Recommendations ---");
         int customerId = getIntInput("Enter customer ID: ");
         
-        Customer customer = findCustomer(customerId);
-        if (customer == null) {
-            System.out.println("Customer not found");
+        ServiceResult<Customer> found = service.customer(customerId);
+        if (!found.ok) {
+            System.out.println(found.message);
             return;
         }
+        Customer customer = found.value;
         
-        java.util.List<Integer> connections = recommendationGraph.getRecommendations(customerId);
-        if (connections.isEmpty()) {
-            System.out.println("No friends found for Customer " + customerId + " (" + customer.name + ")");
+        ServiceResult<java.util.List<Integer>> connections = service.friends(customerId);
+        if (connections.ok && connections.value.isEmpty()) {
+            System.out.println("No friends found for Customer " + customerId + " (" + customer.name() + ")");
             return;
         }
         
-        java.util.Set<String> recommendedMovies = new java.util.HashSet<>();
-        for (Integer friendId : connections) {
-            Customer friend = findCustomer(friendId);
-            if (friend != null) {
-                for (String record : history) {
-                    if (record.startsWith(friend.name + " rented ")) {
-                        String movieTitle = record.substring(friend.name.length() + 8);
-                        recommendedMovies.add(movieTitle);
-                    }
-                }
-            }
+        ServiceResult<java.util.List<Recommendation>> recommended = service.recommendations(customerId, 10);
+        if (!recommended.ok) {
+            System.out.println(recommended.message);
+            return;
         }
-        
+        java.util.List<Recommendation> recommendedMovies = recommended.value;
         if (recommendedMovies.isEmpty()) {
-            System.out.println("No movies rented by friends of Customer " + customerId + " (" + customer.name + ")");
+            System.out.println("No movies rented by friends of Customer " + customerId + " (" + customer.name() + ")");
         } else {
-            System.out.println("Recommended movies for Customer " + customerId + " (" + customer.name + "):");
-            for (String movieTitle : recommendedMovies) {
-                System.out.println("  - " + movieTitle);
+            System.out.println("Recommended movies for Customer " + customerId + " (" + customer.name() + "):");
+            for (Recommendation recommendation : recommendedMovies) {
+                System.out.println("  - " + recommendation);
             }
         }
     }
     
-    static void undoRental() {
-        if (history.isEmpty()) {
-            System.out.println("\nNo rentals to undo");
-            return;
-        }
-        
-        String lastRental = history.pop();
-        System.out.println("\nUndoing: " + lastRental);
+    static void showGraphAnalytics() {
+        System.out.println("\n--- Customer Communities ---");
+        System.out.print(service.communities(10).value);
+    }
+    
+    static String describeCommunities(int top) {
+        StringBuilder report = new StringBuilder();
+        report.append("Customers: ").append(recommendationGraph.customerCount())
+                .append(", connections: ").append(recommendationGraph.connectionCount()).append('\n');
+        report.append("Connected groups: ").append(graphAnalytics.componentCount())
+                .append(", communities: ").append(graphAnalytics.communityCount()).append('\n');
         
-        String movieTitle = lastRental.substring(lastRental.indexOf("rented") + 7);
-        for (Movie movie : movies) {
-            if (movie.title.equals(movieTitle)) {
-                movie.rented = false;
-                break;
+        int[] influencers = graphAnalytics.topInfluencers(top);
+        if (influencers.length > 0) {
+            report.append("Most influential customers:\n");
+            for (int customerId : influencers) {
+                Customer customer = findCustomer(customerId);
+                report.append(String.format("  - Customer %d (%s): influence %.4f, community %d%n", customerId,
+                        customer == null ? "unknown" : customer.name(), graphAnalytics.influence(customerId),
+                        graphAnalytics.community(customerId)));
             }
         }
+        return report.toString();
+    }
+    
+    static void showMetrics() {
+        System.out.println("\n--- Runtime Metrics ---");
+        Metrics.print(System.out);
+    }
+    
+    static void undoOperation() {
+        ServiceResult<String> undone = service.undo();
+        System.out.println(undone.ok ? "\nUndoing: " + undone.value : "\n" + undone.message);
+    }
+    
+    static void redoOperation() {
+        ServiceResult<String> redone = service.redo();
+        System.out.println(redone.ok ? "\nRedoing: " + redone.value : "\n" + redone.message);
+    }
+    
+    static void importData() {
+        System.out.println("\n--- Import Data Directory ---");
+        String directory = getStringInput("Enter directory containing customers.csv, movies.csv, friendships.csv, rentals.csv: ");
+        System.out.println(service.importData(java.nio.file.Paths.get(directory), BulkImporter::printProgress).message);
+    }
+    
+    static void undoRentalById() {
+        System.out.println("\n--- Undo Rental ---");
+        int rentalId = getIntInput("Enter rental ID: ");
+        System.out.println(service.undoRental(rentalId).message);
+    }
+    
+    static boolean revertLastRental() {
+        int customerId;
+        synchronized (history) {
+            if (history.isEmpty()) return false;
+            customerId = history.customerId(history.last());
+            Movie movie;
+            movie = findMovie(history.movieId(history.last()));
+            boolean active = history.isActive(history.last());
+            history.removeLast();
+            if (journal != null) journal.logUndo();
+            if (movie != null && active) {
+                movie.release();
+                movieSearch.rentedChanged(movie);
+            }
+        }
+        Metrics.rentalsUndone.increment();
+        recommender.rentalChanged(customerId);
+        return true;
     }
     
     static void showHistory() {
@@ -493,43 +1510,397 @@ public class Project {
         }
         
         System.out.println("\n--- Rental History (Most Recent First) ---");
-        java.util.Stack<String> temp = new java.util.Stack<>();
-        temp.addAll(history);
+        showListing(Listings.View.HISTORY);
+    }
+    
+    static String describeDueState(int entry) {
+        if (history.isCancelled(entry)) return "[cancelled]";
+        if (!history.isActive(entry)) return "[returned " + java.time.Instant.ofEpochMilli(history.returnedAt(entry)) + "]";
+        String due = java.time.Instant.ofEpochMilli(history.dueAt(entry)).toString();
+        return history.isOverdue(entry) ? "[OVERDUE since " + due + "]" : "[due " + due + "]";
+    }
+    
+    static void returnMovie() {
+        System.out.println("\n--- Return Movie ---");
+        int movieId = getIntInput("Enter movie ID: ");
+        System.out.println(service.returnMovie(movieId).message);
+    }
+    
+    static void showOverdueRentals() {
+        service.expireDueRentals(System.currentTimeMillis());
+        synchronized (history) {
+            System.out.println("\n--- Overdue Rentals (" + history.overdueCount() + " of " + history.activeCount() + " active) ---");
+            int shown = 0;
+            for (int entry = history.nextOverdue(0); entry >= 0 && shown < 50; entry = history.nextOverdue(entry + 1)) {
+                System.out.println("  • Rental " + entry + ": " + describeRental(entry) + " " + describeDueState(entry));
+                shown++;
+            }
+            if (shown == 0) System.out.println("No overdue rentals");
+        }
+    }
+    
+    static ReturnStatus returnMovie(int movieId) {
+        synchronized (history) {
+            int latest = history.latestForMovie(movieId);
+            if (latest == RentalLedger.NONE) return ReturnStatus.RENTAL_NOT_FOUND;
+            for (int entry = latest; entry != RentalLedger.NONE; entry = history.previousForMovie(entry)) {
+                if (history.isActive(entry)) return returnRental(entry, System.currentTimeMillis());
+            }
+            return ReturnStatus.ALREADY_RETURNED;
+        }
+    }
+    
+    static ReturnStatus returnRental(int rentalId, long timestamp) {
+        return returnRental(rentalId, timestamp, true);
+    }
+    
+    static ReturnStatus returnRental(int rentalId, long timestamp, boolean fulfilWaitlist) {
+        synchronized (history) {
+            if (rentalId < 0 || rentalId >= history.size()) return ReturnStatus.RENTAL_NOT_FOUND;
+            if (!history.isActive(rentalId)) return ReturnStatus.ALREADY_RETURNED;
+            transactions.begin();
+            try {
+                history.markReturned(rentalId, timestamp);
+                if (journal != null) journal.logReturn(rentalId, timestamp);
+                transactions.record(TransactionLog.RETURNED, rentalId, 0, timestamp, null);
+                Movie movie = findMovie(history.movieId(rentalId));
+                if (movie != null) {
+                    movie.release();
+                    movieSearch.rentedChanged(movie);
+                    if (fulfilWaitlist) drainWaitlist(movie);
+                }
+            } finally {
+                transactions.commit();
+            }
+        }
+        Metrics.rentalsReturned.increment();
+        return ReturnStatus.RETURNED;
+    }
+    
+    static ReturnStatus undoRental(int rentalId) {
+        synchronized (history) {
+            if (rentalId < 0 || rentalId >= history.size()) return ReturnStatus.RENTAL_NOT_FOUND;
+            if (!history.isActive(rentalId)) return ReturnStatus.ALREADY_RETURNED;
+            transactions.begin();
+            try {
+                Movie movie = cancelRental(rentalId);
+                transactions.record(TransactionLog.CANCELLED, rentalId, 0, 0, null);
+                if (movie != null) drainWaitlist(movie);
+            } finally {
+                transactions.commit();
+            }
+        }
+        Metrics.rentalsUndone.increment();
+        return ReturnStatus.RETURNED;
+    }
+    
+    private static Movie cancelRental(int rentalId) {
+        if (!history.cancel(rentalId)) return null;
+        if (journal != null) journal.logCancelRental(rentalId);
+        recommender.rentalChanged(history.customerId(rentalId));
+        Movie movie = findMovie(history.movieId(rentalId));
+        if (movie != null) {
+            movie.release();
+            movieSearch.rentedChanged(movie);
+        }
+        return movie;
+    }
+    
+    private static boolean restoreRental(int rentalId) {
+        Movie movie = findMovie(history.movieId(rentalId));
+        if (history.isActive(rentalId) || movie != null && !movie.tryRent()) return false;
+        history.restore(rentalId);
+        dueDates.schedule(rentalId, history.dueAt(rentalId), DueScheduler.DUE);
+        if (journal != null) journal.logRestoreRental(rentalId);
+        recommender.rentalChanged(history.customerId(rentalId));
+        if (movie != null) movieSearch.rentedChanged(movie);
+        return true;
+    }
+    
+    static <T> T inTransaction(java.util.function.Supplier<T> body) {
+        synchronized (history) {
+            transactions.begin();
+            try {
+                return body.get();
+            } finally {
+                transactions.commit();
+            }
+        }
+    }
+    
+    private static void recordTransaction(byte kind, int first, int second, long value, Object ref) {
+        synchronized (history) {
+            transactions.record(kind, first, second, value, ref);
+        }
+    }
+    
+    static String undo() {
+        TransactionApplier applier = new TransactionApplier();
+        String description;
+        synchronized (history) {
+            description = transactions.undo(applier);
+            if (description == null) return null;
+            transactions.begin();
+            try {
+                for (Movie movie : applier.released) drainWaitlist(movie);
+            } finally {
+                transactions.commit();
+            }
+        }
+        applier.connectionsChanged();
+        Metrics.operationsUndone.increment();
+        return description;
+    }
+    
+    static String redo() {
+        TransactionApplier applier = new TransactionApplier();
+        String description;
+        synchronized (history) {
+            description = transactions.redo(applier);
+            if (description == null) return null;
+        }
+        applier.connectionsChanged();
+        Metrics.operationsRedone.increment();
+        return description;
+    }
+    
+    static void unregisterCustomer(int id) {
+        Customer customer = customerIndex.remove(id);
+        if (customer == null) return;
+        if (head == customer) {
+            head = customer.next;
+        } else {
+            for (Customer current = head; current != null; current = current.next) {
+                if (current.next == customer) {
+                    current.next = customer.next;
+                    break;
+                }
+            }
+        }
+        if (journal != null) journal.logRemoveCustomer(id);
+    }
+    
+    static void unregisterMovie(int id) {
+        Movie movie = movieIndex.remove(id);
+        if (movie == null) return;
+        int index = movies.lastIndexOf(movie);
+        if (index >= 0) movies.remove(index);
+        categoryTree.removeMovie(movie);
+        movieSearch.remove(movie);
+        if (journal != null) journal.logRemoveMovie(id);
+    }
+    
+    private static void growCopies(Movie movie, int count) {
+        movie.addCopies(count);
+        movieSearch.rentedChanged(movie);
+        if (journal != null) journal.logAddCopies(movie.id, count);
+    }
+    
+    private static void waitlistRequest(int customerId, int movieId) {
+        Movie movie = findMovie(movieId);
+        if (movie == null) return;
+        movie.waitlist().add(new Request(customerId, movieId));
+        waitlisted.increment();
+        if (journal != null) journal.logWaitlist(customerId, movieId);
+    }
+    
+    private static void unpark(int customerId, int movieId, boolean fromHead) {
+        Movie movie = findMovie(movieId);
+        if (movie == null || movie.waitlist == null) return;
+        if (!removeRequest(movie.waitlist, customerId, movieId, fromHead)) return;
+        waitlisted.decrement();
+        if (journal != null) journal.logUnpark(customerId, movieId, fromHead);
+    }
+    
+    private static void repark(int customerId, int movieId) {
+        Movie movie = findMovie(movieId);
+        if (movie == null) return;
+        movie.waitlist().addFirst(new Request(customerId, movieId));
+        waitlisted.increment();
+        if (journal != null) journal.logRepark(customerId, movieId);
+    }
+    
+    private static void requeue(int customerId, int movieId) {
+        queue.addFirst(new Request(customerId, movieId));
+        if (journal != null) journal.logRequeue(customerId, movieId);
+    }
+    
+    private static void unenqueue(int customerId, int movieId) {
+        if (!removeRequest(queue, customerId, movieId, false)) return;
+        if (journal != null) journal.logUnenqueue(customerId, movieId);
+    }
+    
+    private static boolean removeRequest(java.util.Deque<Request> requests, int customerId, int movieId, boolean fromHead) {
+        java.util.Iterator<Request> it = fromHead ? requests.iterator() : requests.descendingIterator();
+        while (it.hasNext()) {
+            Request req = it.next();
+            if (req.customerId == customerId && req.movieId == movieId) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    static class TransactionApplier implements TransactionLog.Applier {
+        final java.util.Set<Movie> released = new java.util.LinkedHashSet<>();
+        private final java.util.List<int[]> connections = new java.util.ArrayList<>();
         
-        while (!temp.isEmpty()) {
-            System.out.println("  • " + temp.pop());
+        public String describe(byte kind, int first, int second, long value, Object ref) {
+            switch (kind) {
+                case TransactionLog.CUSTOMER_ADDED: return "add Customer " + first + " (" + ref + ")";
+                case TransactionLog.MOVIE_ADDED: return "add Movie " + first + " (" + ((Movie) ref).title() + ")";
+                case TransactionLog.CONNECTED: return "connect Customers " + first + " and " + second;
+                case TransactionLog.COPIES_ADDED: return "add " + second + " copies of Movie " + first;
+                case TransactionLog.RENTED: return "rental " + first + ": " + describeRental(first);
+                case TransactionLog.RETURNED: return "return of rental " + first + ": " + describeRental(first);
+                case TransactionLog.CANCELLED: return "cancellation of rental " + first + ": " + describeRental(first);
+                case TransactionLog.ENQUEUED: return "request: Customer " + first + " wants Movie " + second;
+                case TransactionLog.DEQUEUED: return "processing request: Customer " + first + " wants Movie " + second;
+                case TransactionLog.PARKED: return "waitlisting Customer " + first + " for Movie " + second;
+                default: return "waitlist fulfilment: Customer " + first + " for Movie " + second;
+            }
+        }
+        
+        public void undo(byte kind, int first, int second, long value, Object ref) {
+            switch (kind) {
+                case TransactionLog.CUSTOMER_ADDED: unregisterCustomer(first); break;
+                case TransactionLog.MOVIE_ADDED: unregisterMovie(first); break;
+                case TransactionLog.CONNECTED:
+                    if (unlinkCustomers(first, second)) connections.add(new int[] {first, second});
+                    break;
+                case TransactionLog.COPIES_ADDED: {
+                    Movie movie = findMovie(first);
+                    if (movie != null) removeCopies(movie, second);
+                    break;
+                }
+                case TransactionLog.RENTED: {
+                    Movie movie = cancelRental(first);
+                    if (movie != null) released.add(movie);
+                    break;
+                }
+                case TransactionLog.RETURNED:
+                case TransactionLog.CANCELLED: restoreRental(first); break;
+                case TransactionLog.ENQUEUED: unenqueue(first, second); break;
+                case TransactionLog.DEQUEUED: requeue(first, second); break;
+                case TransactionLog.PARKED: unpark(first, second, false); break;
+                case TransactionLog.UNPARKED: repark(first, second); break;
+                default: break;
+            }
+        }
+        
+        public void redo(byte kind, int first, int second, long value, Object ref) {
+            switch (kind) {
+                case TransactionLog.CUSTOMER_ADDED: registerCustomer(first, (String) ref); break;
+                case TransactionLog.MOVIE_ADDED: registerMovie(first, ((Movie) ref).title(), ((Movie) ref).genre()); break;
+                case TransactionLog.CONNECTED:
+                    if (linkCustomers(first, second)) connections.add(new int[] {first, second});
+                    break;
+                case TransactionLog.COPIES_ADDED: {
+                    Movie movie = findMovie(first);
+                    if (movie != null) growCopies(movie, second);
+                    break;
+                }
+                case TransactionLog.RENTED: restoreRental(first); break;
+                case TransactionLog.RETURNED: returnRental(first, value, false); break;
+                case TransactionLog.CANCELLED: cancelRental(first); break;
+                case TransactionLog.ENQUEUED: submitRequest(new Request(first, second)); break;
+                case TransactionLog.DEQUEUED: nextRequest(); break;
+                case TransactionLog.PARKED: waitlistRequest(first, second); break;
+                case TransactionLog.UNPARKED: unpark(first, second, true); break;
+                default: break;
+            }
+        }
+        
+        void connectionsChanged() {
+            for (int[] connection : connections) {
+                recommender.connectionAdded(connection[0], connection[1]);
+            }
         }
     }
     
-    static void visualizeTree() {
-        if (visualizationFrame == null) {
-            visualizationFrame = new JFrame("Data Structure Visualizations");
-            visualizationFrame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
-            visualizationFrame.setSize(900, 700);
-            JTabbedPane tabbedPane = new JTabbedPane();
-            tabbedPane.addTab("Movie Category Tree", new TreeVisualizationPanel(categoryTree));
-            tabbedPane.add("Recommendation Graph", new GraphVisualizationPanel(recommendationGraph, head));
-            visualizationFrame.add(tabbedPane);
+    static int expireDueRentals(long now) {
+        synchronized (history) {
+            return dueDates.expire(now, Project::dueDateReached);
         }
-        visualizationFrame.setVisible(true);
-        JTabbedPane tabbedPane = (JTabbedPane) visualizationFrame.getContentPane().getComponent(0);
-        tabbedPane.setSelectedIndex(0);
-        visualizationFrame.getContentPane().repaint();
+    }
+    
+    private static void dueDateReached(int rentalId, long deadline, byte kind) {
+        if (rentalId >= history.size() || !history.isActive(rentalId)) return;
+        long dueAt = history.dueAt(rentalId);
+        if (kind == DueScheduler.DUE && dueAt == deadline) {
+            if (!history.isOverdue(rentalId)) {
+                history.markOverdue(rentalId);
+                Metrics.rentalsOverdue.increment();
+            }
+            if (AUTO_RELEASE_MILLIS > 0) dueDates.schedule(rentalId, dueAt + AUTO_RELEASE_MILLIS, DueScheduler.RELEASE);
+        } else if (kind == DueScheduler.RELEASE && dueAt + AUTO_RELEASE_MILLIS == deadline) {
+            if (returnRental(rentalId, deadline) == ReturnStatus.RETURNED) Metrics.rentalsAutoReleased.increment();
+        }
+    }
+    
+    static void rebuildDueDates() {
+        synchronized (history) {
+            dueDates.clear();
+            for (int entry = 0; entry < history.size(); entry++) {
+                if (history.isActive(entry)) dueDates.schedule(entry, history.dueAt(entry), DueScheduler.DUE);
+            }
+        }
+    }
+    
+    static void startDueDateChecker() {
+        long interval = Long.getLong("rental.dueCheckMs", 1000);
+        java.util.concurrent.ScheduledExecutorService checker = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "rental-due-dates");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(() -> service.expireDueRentals(System.currentTimeMillis()),
+                interval, interval, java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+    
+    static String describeRental(int entry) {
+        Customer customer = findCustomer(history.customerId(entry));
+        Movie movie = findMovie(history.movieId(entry));
+        String name = customer != null ? customer.name() : "Customer " + history.customerId(entry);
+        String title = movie != null ? movie.title() : "Movie " + history.movieId(entry);
+        return name + " rented " + title;
+    }
+    
+    static void visualizeTree() {
+        showVisualization(0);
     }
     
     static void visualizeGraph() {
+        showVisualization(1);
+    }
+    
+    static void showVisualization(int tab) {
         if (visualizationFrame == null) {
             visualizationFrame = new JFrame("Data Structure Visualizations");
             visualizationFrame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
             visualizationFrame.setSize(900, 700);
+            treePanel = new TreeVisualizationPanel(categoryTree);
+            graphPanel = new GraphVisualizationPanel(recommendationGraph, customerIndex);
             JTabbedPane tabbedPane = new JTabbedPane();
-            tabbedPane.addTab("Movie Category Tree", new TreeVisualizationPanel(categoryTree));
-            tabbedPane.add("Recommendation Graph", new GraphVisualizationPanel(recommendationGraph, head));
+            tabbedPane.addTab("Movie Category Tree", treePanel);
+            tabbedPane.add("Recommendation Graph", graphPanel);
             visualizationFrame.add(tabbedPane);
+            java.util.concurrent.Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "visualization-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }).scheduleWithFixedDelay(() -> {
+                if (!visualizationFrame.isVisible()) return;
+                treePanel.refresh();
+                graphPanel.refresh();
+            }, VIEW_REFRESH_MILLIS, VIEW_REFRESH_MILLIS, java.util.concurrent.TimeUnit.MILLISECONDS);
         }
+        treePanel.refresh();
+        graphPanel.refresh();
         visualizationFrame.setVisible(true);
         JTabbedPane tabbedPane = (JTabbedPane) visualizationFrame.getContentPane().getComponent(0);
-        tabbedPane.setSelectedIndex(1);
+        tabbedPane.setSelectedIndex(tab);
         visualizationFrame.getContentPane().repaint();
     }
     
@@ -538,24 +1909,338 @@ public class Project {
         if (visualizationFrame != null) {
             visualizationFrame.dispose();
         }
+        closeJournal();
         scanner.close();
         System.exit(0);
     }
     
-    static Customer findCustomer(int id) {
-        Customer current = head;
-        while (current != null) {
-            if (current.id == id) return current;
-            current = current.next;
+    static void openJournal() {
+        String dataDir = System.getProperty("rental.dataDir");
+        if (dataDir == null) return;
+        
+        RentalJournal opened = new RentalJournal(java.nio.file.Paths.get(dataDir),
+                Integer.getInteger("rental.syncEvery", 64),
+                Long.getLong("rental.syncIntervalMs", 10),
+                Boolean.parseBoolean(System.getProperty("rental.fsync", "true")),
+                Long.getLong("rental.snapshotEvery", 100_000));
+        transactions.suspend();
+        service.writeLock().lock();
+        try {
+            long start = System.nanoTime();
+            long replayed = opened.recover(Project::readSnapshot, new JournalReplayer());
+            graphAnalytics.invalidate();
+            System.out.printf("Recovered %d customers, %d movies, %d rentals (%d journal records replayed) in %d ms%n",
+                    customerIndex.size(), movies.size(), history.size(), replayed, (System.nanoTime() - start) / 1_000_000);
+        } catch (java.io.IOException e) {
+            System.out.println("Could not open data directory " + dataDir + ": " + e.getMessage());
+            return;
+        } finally {
+            service.writeLock().unlock();
+            transactions.clear();
+            transactions.resume();
         }
-        return null;
+        journal = opened;
+        rebuildDueDates();
+        drainWaitlists();
+        Runtime.getRuntime().addShutdownHook(new Thread(Project::closeJournal, "rental-journal-shutdown"));
     }
     
-    static Movie findMovie(int id) {
+    static synchronized void closeJournal() {
+        if (journal == null) return;
+        journal.close();
+        journal = null;
+    }
+    
+    static void checkpointIfDue() {
+        if (journal != null && journal.checkpointDue()) {
+            checkpoint();
+        }
+    }
+    
+    static void checkpoint() {
+        synchronized (history) {
+            try {
+                journal.checkpoint(Project::writeSnapshot);
+            } catch (java.io.IOException e) {
+                System.out.println("Snapshot failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    static void writeSnapshot(java.io.DataOutputStream out) throws java.io.IOException {
+        java.util.ArrayList<Customer> customers = new java.util.ArrayList<>();
+        for (Customer current = head; current != null; current = current.next) {
+            customers.add(current);
+        }
+        out.writeInt(customers.size());
+        for (int i = customers.size() - 1; i >= 0; i--) {
+            out.writeInt(customers.get(i).id);
+            writeText(out, customers.get(i).name());
+        }
+        
+        out.writeInt(movies.size());
+        for (Movie movie : movies) {
+            out.writeInt(movie.id);
+            writeText(out, movie.title());
+            writeText(out, movie.genre());
+            out.writeInt(movie.copies);
+            out.writeInt(movie.available);
+        }
+        
+        out.writeInt(queue.size());
+        for (Request req : queue) {
+            out.writeInt(req.customerId);
+            out.writeInt(req.movieId);
+        }
+        
+        out.writeInt(history.size());
+        for (int entry = 0; entry < history.size(); entry++) {
+            out.writeInt(history.customerId(entry));
+            out.writeInt(history.movieId(entry));
+            out.writeLong(history.timestamp(entry));
+            out.writeLong(history.dueAt(entry));
+            out.writeLong(history.returnedAt(entry));
+        }
+        
+        CsrGraph adjacency = recommendationGraph.adjacency;
+        CsrGraph.Cursor cursor = adjacency.cursor();
+        out.writeInt(adjacency.vertexCount());
+        for (int vertex = 0; vertex < adjacency.vertexCount(); vertex++) {
+            out.writeInt(adjacency.id(vertex));
+            out.writeInt(adjacency.degree(vertex));
+            for (cursor.reset(adjacency.id(vertex)); cursor.hasNext(); ) {
+                out.writeInt(cursor.next());
+            }
+        }
+        
+        int touched = 0;
+        for (int row = 0; row < catalogSize(); row++) {
+            if (catalogMovies.get(row) != null) touched++;
+        }
+        out.writeInt(touched);
+        for (int row = 0; row < catalogSize(); row++) {
+            Movie movie = catalogMovies.get(row);
+            if (movie != null) {
+                out.writeInt(movie.id);
+                out.writeInt(movie.copies);
+                out.writeInt(movie.available);
+            }
+        }
+        
+        java.util.ArrayList<Movie> waiting = new java.util.ArrayList<>();
         for (Movie movie : movies) {
-            if (movie.id == id) return movie;
+            if (movie.hasWaiters()) waiting.add(movie);
+        }
+        for (int row = 0; row < catalogSize(); row++) {
+            Movie movie = catalogMovies.get(row);
+            if (movie != null && movie.hasWaiters()) waiting.add(movie);
+        }
+        out.writeInt(waiting.size());
+        for (Movie movie : waiting) {
+            Request[] requests = movie.waitlist.toArray(new Request[0]);
+            out.writeInt(movie.id);
+            out.writeInt(requests.length);
+            for (Request req : requests) {
+                out.writeInt(req.customerId);
+            }
+        }
+    }
+    
+    private static void writeText(java.io.DataOutputStream out, String value) throws java.io.IOException {
+        byte[] encoded = value.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+    
+    private static String readText(java.io.DataInputStream in, int version) throws java.io.IOException {
+        if (version < 5) return in.readUTF();
+        byte[] encoded = new byte[in.readInt()];
+        in.readFully(encoded);
+        return new String(encoded, java.nio.charset.StandardCharsets.UTF_8);
+    }
+    
+    static void readSnapshot(java.io.DataInputStream in, int version) throws java.io.IOException {
+        int customerCount = in.readInt();
+        for (int i = 0; i < customerCount; i++) {
+            registerCustomer(in.readInt(), readText(in, version));
+        }
+        
+        int movieCount = in.readInt();
+        movies.ensureCapacity(movieCount);
+        for (int i = 0; i < movieCount; i++) {
+            Movie movie = registerMovie(in.readInt(), readText(in, version), readText(in, version));
+            int copies = version >= 4 ? in.readInt() : 1;
+            movie.setAvailability(copies, version >= 4 ? in.readInt() : in.readBoolean() ? 0 : 1);
+            movieSearch.rentedChanged(movie);
+        }
+        
+        int queued = in.readInt();
+        for (int i = 0; i < queued; i++) {
+            queue.add(new Request(in.readInt(), in.readInt()));
+        }
+        
+        int rentals = in.readInt();
+        history.ensureCapacity(rentals);
+        for (int i = 0; i < rentals; i++) {
+            int customerId = in.readInt();
+            int movieId = in.readInt();
+            long timestamp = in.readLong();
+            long dueAt = version >= 3 ? in.readLong() : timestamp + LOAN_PERIOD_MILLIS;
+            long returnedAt = version >= 3 ? in.readLong() : 0;
+            int entry = history.append(customerId, movieId, timestamp, dueAt);
+            if (returnedAt < 0) {
+                history.cancel(entry);
+            } else if (returnedAt != 0) {
+                history.markReturned(entry, returnedAt);
+            }
+        }
+        
+        int nodes = in.readInt();
+        for (int i = 0; i < nodes; i++) {
+            int customerId = in.readInt();
+            int degree = in.readInt();
+            recommendationGraph.addCustomer(customerId);
+            for (int j = 0; j < degree; j++) {
+                recommendationGraph.adjacency.addEdge(customerId, in.readInt());
+            }
+        }
+        recommendationGraph.adjacency.merge();
+        
+        int catalogStates = in.readInt();
+        for (int i = 0; i < catalogStates; i++) {
+            int movieId = in.readInt();
+            int copies = version >= 4 ? in.readInt() : 1;
+            int available = version >= 4 ? in.readInt() : in.readBoolean() ? 0 : 1;
+            Movie movie = catalog != null && !movieIndex.containsKey(movieId) ? catalogMovie(movieId) : null;
+            if (movie != null) {
+                movie.setAvailability(copies, available);
+            }
+        }
+        if (version < 4) return;
+        
+        int waitlists = in.readInt();
+        for (int i = 0; i < waitlists; i++) {
+            int movieId = in.readInt();
+            int waiting = in.readInt();
+            Movie movie = findMovie(movieId);
+            for (int j = 0; j < waiting; j++) {
+                Request req = new Request(in.readInt(), movieId);
+                if (movie != null) {
+                    movie.waitlist().add(req);
+                    waitlisted.increment();
+                }
+            }
+        }
+    }
+    
+    static class JournalReplayer implements RentalJournal.Replayer {
+        public void addCustomer(int id, String name) {
+            registerCustomer(id, name);
+        }
+        
+        public void addMovie(int id, String title, String genre) {
+            registerMovie(id, title, genre);
+        }
+        
+        public void enqueue(int customerId, int movieId) {
+            queue.add(new Request(customerId, movieId));
+        }
+        
+        public void dequeue() {
+            queue.poll();
+        }
+        
+        public void rent(int customerId, int movieId, long timestamp, long dueAt) {
+            Movie movie = findMovie(movieId);
+            if (movie != null) {
+                java.util.concurrent.ConcurrentLinkedDeque<Request> waitlist = movie.waitlist;
+                if (waitlist != null && removeRequest(waitlist, customerId, movieId, true)) waitlisted.decrement();
+                movie.tryRent();
+                movieSearch.rentedChanged(movie);
+            }
+            history.append(customerId, movieId, timestamp, dueAt != 0 ? dueAt : timestamp + LOAN_PERIOD_MILLIS);
+        }
+        
+        public void returned(int rentalId, long timestamp) {
+            returnRental(rentalId, timestamp, false);
+        }
+        
+        public void undo() {
+            revertLastRental();
+        }
+        
+        public void waitlist(int customerId, int movieId) {
+            waitlistRequest(customerId, movieId);
+        }
+        
+        public void addCopies(int movieId, int count) {
+            Movie movie = findMovie(movieId);
+            if (movie != null) {
+                movie.addCopies(count);
+                movieSearch.rentedChanged(movie);
+            }
+        }
+        
+        public void removeCustomer(int id) {
+            unregisterCustomer(id);
+        }
+        
+        public void removeMovie(int id) {
+            unregisterMovie(id);
+        }
+        
+        public void disconnect(int customer1, int customer2) {
+            recommendationGraph.removeConnection(customer1, customer2);
+        }
+        
+        public void cancelRental(int rentalId) {
+            Project.cancelRental(rentalId);
+        }
+        
+        public void restoreRental(int rentalId) {
+            Project.restoreRental(rentalId);
+        }
+        
+        public void requeue(int customerId, int movieId) {
+            Project.requeue(customerId, movieId);
+        }
+        
+        public void unenqueue(int customerId, int movieId) {
+            Project.unenqueue(customerId, movieId);
+        }
+        
+        public void unpark(int customerId, int movieId, boolean fromHead) {
+            Project.unpark(customerId, movieId, fromHead);
+        }
+        
+        public void repark(int customerId, int movieId) {
+            Project.repark(customerId, movieId);
+        }
+        
+        public void connect(int customer1, int customer2) {
+            recommendationGraph.addConnection(customer1, customer2);
+        }
+    }
+    
+    static Customer findCustomer(int id) {
+        long start = Metrics.sampleLookup() ? System.nanoTime() : 0;
+        Customer customer = customerIndex.get(id);
+        Metrics.customerLookups.increment();
+        if (customer == null) Metrics.customerMisses.increment();
+        if (start != 0) Metrics.customerLookupTimer.stop(start);
+        return customer;
+    }
+    
+    static Movie findMovie(int id) {
+        long start = Metrics.sampleLookup() ? System.nanoTime() : 0;
+        Movie movie = movieIndex.get(id);
+        if (movie == null && catalog != null) {
+            movie = catalogMovie(id);
         }
-        return null;
+        Metrics.movieLookups.increment();
+        if (movie == null) Metrics.movieMisses.increment();
+        if (start != 0) Metrics.movieLookupTimer.stop(start);
+        return movie;
     }
     
     static int getIntInput(String prompt) {
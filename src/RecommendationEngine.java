@@ -0,0 +1,291 @@
+package project;
+
+class Recommendation {
+    final Movie movie;
+    final double score;
+    final int friends;
+
+    Recommendation(Movie movie, double score, int friends) {
+        this.movie = movie;
+        this.score = score;
+        this.friends = friends;
+    }
+
+    public String toString() {
+        return String.format("%s (score %.2f, rented by %d friend%s)", movie.title(), score, friends, friends == 1 ? "" : "s");
+    }
+}
+
+class RecommendationEngine {
+    static final double DIRECT_FRIEND_WEIGHT = 1.0;
+    static final double FRIEND_OF_FRIEND_WEIGHT = 0.35;
+    static final long RECENCY_HALF_LIFE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+    static final int CACHE_DEPTH_FACTOR = 4;
+    static final int MAX_K = 1_000;
+
+    private final RentalLedger ledger;
+    private final GraphAnalytics analytics;
+    private final CsrGraph adjacency;
+    private final java.util.concurrent.ConcurrentHashMap<Integer, Ranking> cache = new java.util.concurrent.ConcurrentHashMap<>();
+    private final Object dirtyLock = new Object();
+    private int[] dirtyCustomers = new int[64];
+    private int dirtyCount;
+    private boolean clearAll;
+    private volatile boolean dirty;
+
+    RecommendationEngine(RecommendationGraph graph, RentalLedger ledger, GraphAnalytics analytics) {
+        this.ledger = ledger;
+        this.analytics = analytics;
+        this.adjacency = graph.adjacency;
+    }
+
+    void rentalChanged(int customerId) {
+        synchronized (dirtyLock) {
+            dirty = true;
+            if (clearAll) return;
+            if (dirtyCount == dirtyCustomers.length) {
+                if (dirtyCount >= 1 << 16) {
+                    clearAll = true;
+                    dirtyCount = 0;
+                    return;
+                }
+                dirtyCustomers = java.util.Arrays.copyOf(dirtyCustomers, dirtyCount * 2);
+            }
+            dirtyCustomers[dirtyCount++] = customerId;
+        }
+    }
+
+    void invalidateAll() {
+        synchronized (dirtyLock) {
+            dirty = true;
+            clearAll = true;
+            dirtyCount = 0;
+        }
+    }
+
+    void connectionAdded(int customer1, int customer2) {
+        CsrGraph.Cursor friends = adjacency.cursor();
+        invalidate(customer1);
+        invalidate(customer2);
+        for (friends.reset(customer1); friends.hasNext(); ) invalidate(friends.next());
+        for (friends.reset(customer2); friends.hasNext(); ) invalidate(friends.next());
+    }
+
+    java.util.List<Recommendation> recommend(int customerId, int k) {
+        RecommendEvent event = new RecommendEvent();
+        event.begin();
+        long start = System.nanoTime();
+        java.util.List<Recommendation> result = rankCached(customerId, k, event);
+        Metrics.recommendTimer.stop(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.customerId = customerId;
+            event.requested = k;
+            event.returned = result.size();
+            event.commit();
+        }
+        return result;
+    }
+
+    private java.util.List<Recommendation> rankCached(int customerId, int k, RecommendEvent event) {
+        if (k <= 0) return java.util.Collections.emptyList();
+        applyPendingInvalidations();
+
+        int depth = (int) Math.min((long) k * CACHE_DEPTH_FACTOR, Integer.MAX_VALUE);
+        Ranking ranking = cache.get(customerId);
+        event.cacheHit = ranking != null && ranking.depth >= depth;
+        if (event.cacheHit) Metrics.recommendationCacheHits.increment();
+        if (!event.cacheHit) ranking = cacheRanking(customerId, depth);
+
+        java.util.List<Recommendation> result = available(ranking, k);
+        if (result.size() < k && !ranking.complete) {
+            ranking = cacheRanking(customerId, (int) Math.min(2L * ranking.depth, Integer.MAX_VALUE));
+            result = available(ranking, k);
+        }
+        return result;
+    }
+
+    private Ranking cacheRanking(int customerId, int depth) {
+        Ranking ranking = new Ranking(rank(customerId, depth), depth);
+        cache.merge(customerId, ranking, (cached, computed) -> cached.depth >= computed.depth ? cached : computed);
+        return ranking;
+    }
+
+    private static java.util.List<Recommendation> available(Ranking ranking, int k) {
+        java.util.List<Recommendation> result = new java.util.ArrayList<>(Math.min(k, ranking.ranked.length));
+        for (Recommendation recommendation : ranking.ranked) {
+            if (result.size() == k) break;
+            if (!recommendation.movie.isRented()) result.add(recommendation);
+        }
+        return result;
+    }
+
+    int cachedCustomers() {
+        return cache.size();
+    }
+
+    private void applyPendingInvalidations() {
+        if (!dirty) return;
+        synchronized (dirtyLock) {
+            if (clearAll) {
+                cache.clear();
+                clearAll = false;
+            } else {
+                CsrGraph.Cursor friends = adjacency.cursor();
+                CsrGraph.Cursor friendsOfFriend = adjacency.cursor();
+                for (int i = 0; i < dirtyCount; i++) {
+                    int customerId = dirtyCustomers[i];
+                    invalidate(customerId);
+                    for (friends.reset(customerId); friends.hasNext(); ) {
+                        int friend = friends.next();
+                        invalidate(friend);
+                        for (friendsOfFriend.reset(friend); friendsOfFriend.hasNext(); ) invalidate(friendsOfFriend.next());
+                    }
+                }
+            }
+            dirtyCount = 0;
+            dirty = false;
+        }
+    }
+
+    private void invalidate(int customerId) {
+        cache.remove(customerId);
+    }
+
+    private Recommendation[] rank(int customerId, int depth) {
+        IntIntMap hops = new IntIntMap();
+        int[] members = neighbourhood(customerId, hops);
+        double[] affinities = analytics.affinities(customerId, members);
+
+        IntIntMap candidateSlots = new IntIntMap();
+        double[] scores = new double[16];
+        int[] friendCounts = new int[16];
+        int[] movieIds = new int[16];
+        int candidates = 0;
+        long now = System.currentTimeMillis();
+
+        synchronized (ledger) {
+            IntIntMap alreadyRented = new IntIntMap();
+            for (int entry = ledger.latestForCustomer(customerId); entry != RentalLedger.NONE; entry = ledger.previousForCustomer(entry)) {
+                if (!ledger.isCancelled(entry)) alreadyRented.put(ledger.movieId(entry), 1);
+            }
+
+            IntIntMap lastCountedBy = new IntIntMap();
+            for (int i = 0; i < members.length; i++) {
+                int friend = members[i];
+                double weight = (hops.get(friend, 2) == 1 ? DIRECT_FRIEND_WEIGHT : FRIEND_OF_FRIEND_WEIGHT) * affinities[i];
+                for (int entry = ledger.latestForCustomer(friend); entry != RentalLedger.NONE; entry = ledger.previousForCustomer(entry)) {
+                    int movieId = ledger.movieId(entry);
+                    if (alreadyRented.containsKey(movieId) || ledger.isCancelled(entry)) continue;
+                    int slot = candidateSlots.get(movieId, -1);
+                    if (slot < 0) {
+                        if (candidates == scores.length) {
+                            scores = java.util.Arrays.copyOf(scores, candidates * 2);
+                            friendCounts = java.util.Arrays.copyOf(friendCounts, candidates * 2);
+                            movieIds = java.util.Arrays.copyOf(movieIds, candidates * 2);
+                        }
+                        slot = candidates++;
+                        candidateSlots.put(movieId, slot);
+                        movieIds[slot] = movieId;
+                    }
+                    double age = Math.max(0, now - ledger.timestamp(entry));
+                    scores[slot] += weight * Math.pow(0.5, age / RECENCY_HALF_LIFE_MILLIS);
+                    if (lastCountedBy.get(slot, Integer.MIN_VALUE) != friend) {
+                        lastCountedBy.put(slot, friend);
+                        friendCounts[slot]++;
+                    }
+                }
+            }
+        }
+
+        int[] top = topSlots(scores, candidates, Math.min(depth, candidates));
+        java.util.List<Recommendation> ranked = new java.util.ArrayList<>(top.length);
+        for (int slot : top) {
+            Movie movie = Project.findMovie(movieIds[slot]);
+            if (movie != null) ranked.add(new Recommendation(movie, scores[slot], friendCounts[slot]));
+        }
+        return ranked.toArray(new Recommendation[0]);
+    }
+
+    private int[] neighbourhood(int customerId, IntIntMap hops) {
+        CsrGraph.Cursor friends = adjacency.cursor();
+        CsrGraph.Cursor friendsOfFriend = adjacency.cursor();
+        hops.put(customerId, 0);
+        int[] members = new int[16];
+        int count = 0;
+        for (friends.reset(customerId); friends.hasNext(); ) {
+            int friend = friends.next();
+            if (hops.containsKey(friend)) continue;
+            hops.put(friend, 1);
+            if (count == members.length) members = java.util.Arrays.copyOf(members, count * 2);
+            members[count++] = friend;
+        }
+        int direct = count;
+        for (int i = 0; i < direct; i++) {
+            for (friendsOfFriend.reset(members[i]); friendsOfFriend.hasNext(); ) {
+                int friendOfFriend = friendsOfFriend.next();
+                if (hops.containsKey(friendOfFriend)) continue;
+                hops.put(friendOfFriend, 2);
+                if (count == members.length) members = java.util.Arrays.copyOf(members, count * 2);
+                members[count++] = friendOfFriend;
+            }
+        }
+        return java.util.Arrays.copyOf(members, count);
+    }
+
+    static int[] topSlots(double[] scores, int candidates, int k) {
+        int[] heap = new int[k];
+        int size = 0;
+        for (int slot = 0; slot < candidates && k > 0; slot++) {
+            if (size < k) {
+                int i = size++;
+                heap[i] = slot;
+                while (i > 0 && scores[heap[(i - 1) / 2]] > scores[heap[i]]) {
+                    swap(heap, i, (i - 1) / 2);
+                    i = (i - 1) / 2;
+                }
+            } else if (scores[slot] > scores[heap[0]]) {
+                heap[0] = slot;
+                siftDown(heap, size, 0, scores);
+            }
+        }
+        int[] sorted = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            sorted[i] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, 0, scores);
+        }
+        return sorted;
+    }
+
+    private static void siftDown(int[] heap, int size, int i, double[] scores) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && scores[heap[left]] < scores[heap[smallest]]) smallest = left;
+            if (right < size && scores[heap[right]] < scores[heap[smallest]]) smallest = right;
+            if (smallest == i) return;
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    private static final class Ranking {
+        final Recommendation[] ranked;
+        final int depth;
+        final boolean complete;
+
+        Ranking(Recommendation[] ranked, int depth) {
+            this.ranked = ranked;
+            this.depth = depth;
+            this.complete = ranked.length < depth;
+        }
+    }
+}
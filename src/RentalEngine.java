@@ -0,0 +1,140 @@
+package project;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Standalone prototype, exercised only by the "engine" benchmark. Workers call Project.rentOrWait
+// directly, outside RentalService's lock; the menu and server drain Project.queue under that lock.
+class RentalEngine {
+    private final MpmcQueue<Request> intake;
+    private final int workerCount;
+    private final ThreadFactory threadFactory;
+    private final boolean virtualThreads;
+    private final Thread[] workers;
+    private final LatencyHistogram[] latencies;
+    private final LongAdder[] outcomes = new LongAdder[RentalStatus.values().length];
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean running;
+
+    RentalEngine(int queueCapacity, int workerCount, boolean virtualThreads) {
+        if (workerCount < 1) throw new IllegalArgumentException("workerCount must be positive");
+        this.intake = new MpmcQueue<>(queueCapacity);
+        this.workerCount = workerCount;
+        ThreadFactory virtual = virtualThreads ? virtualThreadFactory() : null;
+        this.virtualThreads = virtual != null;
+        this.threadFactory = virtual != null ? virtual : platformThreadFactory();
+        this.workers = new Thread[workerCount];
+        this.latencies = new LatencyHistogram[workerCount];
+        for (int i = 0; i < outcomes.length; i++) outcomes[i] = new LongAdder();
+    }
+
+    synchronized void start() {
+        if (running) return;
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            latencies[i] = histogram;
+            workers[i] = threadFactory.newThread(() -> work(histogram));
+            workers[i].start();
+        }
+    }
+
+    boolean submit(Request request) {
+        request.submittedNanos = System.nanoTime();
+        if (intake.offer(request)) return true;
+        rejected.increment();
+        return false;
+    }
+
+    void submitBlocking(Request request) {
+        request.submittedNanos = System.nanoTime();
+        while (!intake.offer(request)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    synchronized void shutdown() throws InterruptedException {
+        if (!running) return;
+        while (!intake.isEmpty()) {
+            Thread.sleep(1);
+        }
+        running = false;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+            worker.join();
+        }
+    }
+
+    private void work(LatencyHistogram histogram) {
+        int idleSpins = 0;
+        while (true) {
+            Request request = intake.poll();
+            if (request == null) {
+                if (!running) return;
+                if (++idleSpins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(50_000);
+                }
+                continue;
+            }
+            idleSpins = 0;
+            RentalStatus status = Project.rentOrWait(request);
+            outcomes[status.ordinal()].increment();
+            long latency = System.nanoTime() - request.submittedNanos;
+            synchronized (histogram) {
+                histogram.record(latency);
+            }
+        }
+    }
+
+    int pending() {
+        return intake.size();
+    }
+
+    long count(RentalStatus status) {
+        return outcomes[status.ordinal()].sum();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    LatencyHistogram latency() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : latencies) {
+            if (histogram == null) continue;
+            synchronized (histogram) {
+                merged.merge(histogram);
+            }
+        }
+        return merged;
+    }
+
+    String executorName() {
+        return virtualThreads ? "virtual" : "platform";
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        return new ThreadFactory() {
+            private int next;
+
+            @Override
+            public synchronized Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "rental-worker-" + next++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
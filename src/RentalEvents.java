@@ -0,0 +1,48 @@
+package project;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("project.ProcessRequest")
+@Label("Process Rental Request")
+@Category("Movie Rental")
+class ProcessRequestEvent extends Event {
+    @Label("Customer Id")
+    int customerId;
+
+    @Label("Movie Id")
+    int movieId;
+
+    @Label("Status")
+    String status;
+}
+
+@Name("project.Undo")
+@Label("Undo or Redo")
+@Category("Movie Rental")
+class UndoEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Redo")
+    boolean redo;
+}
+
+@Name("project.Recommend")
+@Label("Show Recommendations")
+@Category("Movie Rental")
+class RecommendEvent extends Event {
+    @Label("Customer Id")
+    int customerId;
+
+    @Label("Requested")
+    int requested;
+
+    @Label("Returned")
+    int returned;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+}
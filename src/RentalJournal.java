@@ -0,0 +1,501 @@
+package project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+class RentalJournal implements AutoCloseable {
+    static final byte ADD_CUSTOMER = 1;
+    static final byte ADD_MOVIE = 2;
+    static final byte ENQUEUE = 3;
+    static final byte DEQUEUE = 4;
+    static final byte RENT = 5;
+    static final byte UNDO = 6;
+    static final byte CONNECT = 7;
+    static final byte RETURN = 8;
+    static final byte WAITLIST = 9;
+    static final byte ADD_COPIES = 10;
+    static final byte REMOVE_CUSTOMER = 11;
+    static final byte REMOVE_MOVIE = 12;
+    static final byte DISCONNECT = 13;
+    static final byte CANCEL_RENTAL = 14;
+    static final byte RESTORE_RENTAL = 15;
+    static final byte REQUEUE = 16;
+    static final byte UNENQUEUE = 17;
+    static final byte UNPARK_FIRST = 18;
+    static final byte UNPARK_LAST = 19;
+    static final byte REPARK = 20;
+
+    private static final int SNAPSHOT_MAGIC = 0x52534E50;
+    private static final int SNAPSHOT_VERSION = 5;
+    private static final int OLDEST_SNAPSHOT_VERSION = 2;
+    private static final String SNAPSHOT_FILE = "rental.snapshot";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    interface Replayer {
+        void addCustomer(int id, String name);
+        void addMovie(int id, String title, String genre);
+        void enqueue(int customerId, int movieId);
+        void dequeue();
+        void rent(int customerId, int movieId, long timestamp, long dueAt);
+        void undo();
+        void connect(int customer1, int customer2);
+        void returned(int rentalId, long timestamp);
+        void waitlist(int customerId, int movieId);
+        void addCopies(int movieId, int count);
+        void removeCustomer(int id);
+        void removeMovie(int id);
+        void disconnect(int customer1, int customer2);
+        void cancelRental(int rentalId);
+        void restoreRental(int rentalId);
+        void requeue(int customerId, int movieId);
+        void unenqueue(int customerId, int movieId);
+        void unpark(int customerId, int movieId, boolean fromHead);
+        void repark(int customerId, int movieId);
+    }
+
+    interface SnapshotWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    interface SnapshotReader {
+        void read(DataInputStream in, int version) throws IOException;
+    }
+
+    private final Path directory;
+    private final int syncEveryRecords;
+    private final long syncIntervalMillis;
+    private final boolean fsync;
+    private final long checkpointEveryRecords;
+    private final Object appendLock = new Object();
+    private final Object flushLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final java.util.concurrent.ScheduledExecutorService flusher;
+
+    private FileChannel segment;
+    private ByteBuffer active = ByteBuffer.allocate(1 << 20);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 20);
+    private int recordStart;
+    private long nextLsn = 1;
+    private int unsynced;
+    private long sinceCheckpoint;
+    private boolean closed;
+    private volatile long durableLsn;
+    private volatile IOException failure;
+
+    RentalJournal(Path directory, int syncEveryRecords, long syncIntervalMillis, boolean fsync, long checkpointEveryRecords) {
+        this.directory = directory;
+        this.syncEveryRecords = Math.max(1, syncEveryRecords);
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.fsync = fsync;
+        this.checkpointEveryRecords = checkpointEveryRecords;
+        this.flusher = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "rental-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    long recover(SnapshotReader snapshotReader, Replayer replayer) throws IOException {
+        Files.createDirectories(directory);
+        long snapshotLsn = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+                if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Unrecognized snapshot format: " + snapshot);
+                int version = in.readInt();
+                if (version < OLDEST_SNAPSHOT_VERSION || version > SNAPSHOT_VERSION) {
+                    throw new IOException("Unsupported snapshot version " + version + ": " + snapshot);
+                }
+                snapshotLsn = in.readLong();
+                snapshotReader.read(in, version);
+            }
+        }
+
+        long lastLsn = snapshotLsn;
+        long replayed = 0;
+        java.util.List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            long validLength = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    byte[] payload;
+                    int checksum;
+                    try {
+                        checksum = in.readInt();
+                        if (length < 9 || length > (1 << 24)) break;
+                        payload = new byte[length];
+                        in.readFully(payload);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) break;
+
+                    ByteBuffer record = ByteBuffer.wrap(payload);
+                    byte op = record.get();
+                    long lsn = record.getLong();
+                    if (lsn > lastLsn) {
+                        apply(op, record, replayer);
+                        lastLsn = lsn;
+                        replayed++;
+                    }
+                    validLength += 8 + length;
+                }
+            }
+            if (validLength < Files.size(path)) {
+                System.out.println("Journal: discarding torn tail of " + path.getFileName() + " at byte " + validLength);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+                for (int j = i + 1; j < segments.size(); j++) Files.deleteIfExists(segments.get(j));
+                break;
+            }
+        }
+
+        nextLsn = lastLsn + 1;
+        durableLsn = lastLsn;
+        sinceCheckpoint = replayed;
+        segment = openSegment(nextLsn);
+        if (syncIntervalMillis > 0) {
+            flusher.scheduleWithFixedDelay(this::flush, syncIntervalMillis, syncIntervalMillis,
+                    java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
+        return replayed;
+    }
+
+    private static void apply(byte op, ByteBuffer record, Replayer replayer) throws IOException {
+        switch (op) {
+            case ADD_CUSTOMER: replayer.addCustomer(record.getInt(), readString(record)); break;
+            case ADD_MOVIE: replayer.addMovie(record.getInt(), readString(record), readString(record)); break;
+            case ENQUEUE: replayer.enqueue(record.getInt(), record.getInt()); break;
+            case DEQUEUE: replayer.dequeue(); break;
+            case RENT: replayer.rent(record.getInt(), record.getInt(), record.getLong(),
+                    record.remaining() >= 8 ? record.getLong() : 0); break;
+            case UNDO: replayer.undo(); break;
+            case CONNECT: replayer.connect(record.getInt(), record.getInt()); break;
+            case RETURN: replayer.returned(record.getInt(), record.getLong()); break;
+            case WAITLIST: replayer.waitlist(record.getInt(), record.getInt()); break;
+            case ADD_COPIES: replayer.addCopies(record.getInt(), record.getInt()); break;
+            case REMOVE_CUSTOMER: replayer.removeCustomer(record.getInt()); break;
+            case REMOVE_MOVIE: replayer.removeMovie(record.getInt()); break;
+            case DISCONNECT: replayer.disconnect(record.getInt(), record.getInt()); break;
+            case CANCEL_RENTAL: replayer.cancelRental(record.getInt()); break;
+            case RESTORE_RENTAL: replayer.restoreRental(record.getInt()); break;
+            case REQUEUE: replayer.requeue(record.getInt(), record.getInt()); break;
+            case UNENQUEUE: replayer.unenqueue(record.getInt(), record.getInt()); break;
+            case UNPARK_FIRST: replayer.unpark(record.getInt(), record.getInt(), true); break;
+            case UNPARK_LAST: replayer.unpark(record.getInt(), record.getInt(), false); break;
+            case REPARK: replayer.repark(record.getInt(), record.getInt()); break;
+            default: throw new IOException("Unknown journal record type " + op);
+        }
+    }
+
+    void logAddCustomer(int id, String name) {
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        synchronized (appendLock) {
+            ByteBuffer buffer = begin(ADD_CUSTOMER, 8 + encodedName.length);
+            buffer.putInt(id);
+            putString(buffer, encodedName);
+            end(buffer);
+        }
+        afterAppend();
+    }
+
+    void logAddMovie(int id, String title, String genre) {
+        byte[] encodedTitle = title.getBytes(StandardCharsets.UTF_8);
+        byte[] encodedGenre = genre.getBytes(StandardCharsets.UTF_8);
+        synchronized (appendLock) {
+            ByteBuffer buffer = begin(ADD_MOVIE, 12 + encodedTitle.length + encodedGenre.length);
+            buffer.putInt(id);
+            putString(buffer, encodedTitle);
+            putString(buffer, encodedGenre);
+            end(buffer);
+        }
+        afterAppend();
+    }
+
+    void logEnqueue(int customerId, int movieId) {
+        logPair(ENQUEUE, customerId, movieId);
+    }
+
+    void logDequeue() {
+        logEmpty(DEQUEUE);
+    }
+
+    void logRental(int customerId, int movieId, long timestamp, long dueAt) {
+        synchronized (appendLock) {
+            ByteBuffer buffer = begin(RENT, 24);
+            buffer.putInt(customerId).putInt(movieId).putLong(timestamp).putLong(dueAt);
+            end(buffer);
+        }
+        afterAppend();
+    }
+
+    void logReturn(int rentalId, long timestamp) {
+        synchronized (appendLock) {
+            ByteBuffer buffer = begin(RETURN, 12);
+            buffer.putInt(rentalId).putLong(timestamp);
+            end(buffer);
+        }
+        afterAppend();
+    }
+
+    void logWaitlist(int customerId, int movieId) {
+        logPair(WAITLIST, customerId, movieId);
+    }
+
+    void logAddCopies(int movieId, int count) {
+        logPair(ADD_COPIES, movieId, count);
+    }
+
+    void logRemoveCustomer(int id) {
+        logPair(REMOVE_CUSTOMER, id, 0);
+    }
+
+    void logRemoveMovie(int id) {
+        logPair(REMOVE_MOVIE, id, 0);
+    }
+
+    void logDisconnect(int customer1, int customer2) {
+        logPair(DISCONNECT, customer1, customer2);
+    }
+
+    void logCancelRental(int rentalId) {
+        logPair(CANCEL_RENTAL, rentalId, 0);
+    }
+
+    void logRestoreRental(int rentalId) {
+        logPair(RESTORE_RENTAL, rentalId, 0);
+    }
+
+    void logRequeue(int customerId, int movieId) {
+        logPair(REQUEUE, customerId, movieId);
+    }
+
+    void logUnenqueue(int customerId, int movieId) {
+        logPair(UNENQUEUE, customerId, movieId);
+    }
+
+    void logUnpark(int customerId, int movieId, boolean fromHead) {
+        logPair(fromHead ? UNPARK_FIRST : UNPARK_LAST, customerId, movieId);
+    }
+
+    void logRepark(int customerId, int movieId) {
+        logPair(REPARK, customerId, movieId);
+    }
+
+    void logUndo() {
+        logEmpty(UNDO);
+    }
+
+    void logConnection(int customer1, int customer2) {
+        logPair(CONNECT, customer1, customer2);
+    }
+
+    private void logPair(byte op, int first, int second) {
+        synchronized (appendLock) {
+            ByteBuffer buffer = begin(op, 8);
+            buffer.putInt(first).putInt(second);
+            end(buffer);
+        }
+        afterAppend();
+    }
+
+    private void logEmpty(byte op) {
+        synchronized (appendLock) {
+            end(begin(op, 0));
+        }
+        afterAppend();
+    }
+
+    private ByteBuffer begin(byte op, int fieldBytes) {
+        if (closed) throw new IllegalStateException("Journal is closed");
+        int recordBytes = 8 + 9 + fieldBytes;
+        if (active.remaining() < recordBytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + recordBytes));
+            active.flip();
+            larger.put(active);
+            active = larger;
+        }
+        recordStart = active.position();
+        active.putInt(9 + fieldBytes);
+        active.putInt(0);
+        active.put(op);
+        active.putLong(nextLsn++);
+        return active;
+    }
+
+    private void end(ByteBuffer buffer) {
+        int payloadStart = recordStart + 8;
+        crc.reset();
+        crc.update(buffer.array(), payloadStart, buffer.position() - payloadStart);
+        buffer.putInt(recordStart + 4, (int) crc.getValue());
+        unsynced++;
+        sinceCheckpoint++;
+    }
+
+    private void afterAppend() {
+        if (unsynced >= syncEveryRecords) flush();
+    }
+
+    void flush() {
+        synchronized (flushLock) {
+            ByteBuffer pending;
+            long pendingLsn;
+            synchronized (appendLock) {
+                if (active.position() == 0) return;
+                pending = active;
+                pendingLsn = nextLsn - 1;
+                active = spare;
+                spare = null;
+                unsynced = 0;
+            }
+            try {
+                if (failure != null) return;
+                pending.flip();
+                while (pending.hasRemaining()) segment.write(pending);
+                if (fsync) segment.force(false);
+                durableLsn = pendingLsn;
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                pending.clear();
+                synchronized (appendLock) {
+                    spare = pending;
+                }
+            }
+        }
+    }
+
+    // Group commit: the first caller to reach flushLock writes every record appended so far, so
+    // callers queued behind it usually find their LSN already durable and return without I/O.
+    void awaitDurable(long lsn) throws IOException {
+        if (durableLsn >= lsn) return;
+        synchronized (flushLock) {
+            if (durableLsn < lsn) flush();
+        }
+        if (durableLsn < lsn) throw failure != null ? failure : new IOException("Journal record " + lsn + " was not written");
+    }
+
+    long lastLsn() {
+        synchronized (appendLock) {
+            return nextLsn - 1;
+        }
+    }
+
+    IOException failure() {
+        return failure;
+    }
+
+    boolean checkpointDue() {
+        return checkpointEveryRecords > 0 && sinceCheckpoint >= checkpointEveryRecords;
+    }
+
+    void checkpoint(SnapshotWriter snapshotWriter) throws IOException {
+        long snapshotLsn;
+        synchronized (flushLock) {
+            flush();
+            if (failure != null) throw failure;
+            synchronized (appendLock) {
+                snapshotLsn = nextLsn - 1;
+                segment.close();
+                segment = openSegment(nextLsn);
+                sinceCheckpoint = 0;
+            }
+        }
+
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(java.nio.channels.Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(snapshotLsn);
+            snapshotWriter.write(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Path path : segments()) {
+            if (firstLsnOf(path) <= snapshotLsn) Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        flusher.shutdown();
+        flush();
+        closed = true;
+        try {
+            segment.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal close failed", e);
+        }
+    }
+
+    long nextLsn() {
+        return nextLsn;
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(segmentName(firstLsn));
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private java.util.List<Path> segments() throws IOException {
+        java.util.List<Path> segments = new java.util.ArrayList<>();
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).forEach(segments::add);
+        }
+        segments.sort(java.util.Comparator.comparingLong(RentalJournal::firstLsnOf));
+        return segments;
+    }
+
+    private static String segmentName(long firstLsn) {
+        return String.format("%s%016x%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX);
+    }
+
+    private static long firstLsnOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseUnsignedLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()), 16);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] encoded) {
+        buffer.putInt(encoded.length);
+        buffer.put(encoded);
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        String value = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,184 @@
+package project;
+
+class RentalLedger {
+    static final int NONE = -1;
+    private static final long CANCELLED = -1;
+
+    private int[] customerIds;
+    private int[] movieIds;
+    private long[] timestamps;
+    private long[] dueAts;
+    private long[] returnedAts;
+    private final java.util.BitSet overdue = new java.util.BitSet();
+    private int active;
+    private int[] previousByCustomer;
+    private int[] previousByMovie;
+    private int size;
+    private final IntIntMap latestByCustomer = new IntIntMap();
+    private final IntIntMap latestByMovie = new IntIntMap();
+
+    RentalLedger() {
+        this(64);
+    }
+
+    RentalLedger(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        customerIds = new int[capacity];
+        movieIds = new int[capacity];
+        timestamps = new long[capacity];
+        dueAts = new long[capacity];
+        returnedAts = new long[capacity];
+        previousByCustomer = new int[capacity];
+        previousByMovie = new int[capacity];
+    }
+
+    int append(int customerId, int movieId, long timestamp, long dueAt) {
+        if (size == customerIds.length) grow();
+        int entry = size++;
+        customerIds[entry] = customerId;
+        movieIds[entry] = movieId;
+        timestamps[entry] = timestamp;
+        dueAts[entry] = dueAt;
+        returnedAts[entry] = 0;
+        active++;
+        previousByCustomer[entry] = latestByCustomer.get(customerId, NONE);
+        previousByMovie[entry] = latestByMovie.get(movieId, NONE);
+        latestByCustomer.put(customerId, entry);
+        latestByMovie.put(movieId, entry);
+        return entry;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity > customerIds.length) resize(capacity);
+    }
+
+    int removeLast() {
+        if (size == 0) return NONE;
+        int entry = --size;
+        if (returnedAts[entry] == 0) active--;
+        overdue.clear(entry);
+        restoreLatest(latestByCustomer, customerIds[entry], previousByCustomer[entry]);
+        restoreLatest(latestByMovie, movieIds[entry], previousByMovie[entry]);
+        return entry;
+    }
+
+    private static void restoreLatest(IntIntMap latest, int key, int previous) {
+        if (previous == NONE) {
+            latest.remove(key);
+        } else {
+            latest.put(key, previous);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int last() {
+        return size - 1;
+    }
+
+    int customerId(int entry) {
+        return customerIds[entry];
+    }
+
+    int movieId(int entry) {
+        return movieIds[entry];
+    }
+
+    long timestamp(int entry) {
+        return timestamps[entry];
+    }
+
+    long dueAt(int entry) {
+        return dueAts[entry];
+    }
+
+    long returnedAt(int entry) {
+        return returnedAts[entry];
+    }
+
+    boolean isActive(int entry) {
+        return returnedAts[entry] == 0;
+    }
+
+    void markReturned(int entry, long timestamp) {
+        if (returnedAts[entry] != 0) return;
+        returnedAts[entry] = Math.max(timestamp, 1);
+        overdue.clear(entry);
+        active--;
+    }
+
+    boolean isCancelled(int entry) {
+        return returnedAts[entry] == CANCELLED;
+    }
+
+    boolean cancel(int entry) {
+        if (returnedAts[entry] != 0) return false;
+        returnedAts[entry] = CANCELLED;
+        overdue.clear(entry);
+        active--;
+        return true;
+    }
+
+    boolean restore(int entry) {
+        if (returnedAts[entry] == 0) return false;
+        returnedAts[entry] = 0;
+        active++;
+        return true;
+    }
+
+    boolean isOverdue(int entry) {
+        return overdue.get(entry);
+    }
+
+    void markOverdue(int entry) {
+        overdue.set(entry);
+    }
+
+    int activeCount() {
+        return active;
+    }
+
+    int overdueCount() {
+        return overdue.cardinality();
+    }
+
+    int nextOverdue(int fromEntry) {
+        return overdue.nextSetBit(fromEntry);
+    }
+
+    int latestForCustomer(int customerId) {
+        return latestByCustomer.get(customerId, NONE);
+    }
+
+    int previousForCustomer(int entry) {
+        return previousByCustomer[entry];
+    }
+
+    int latestForMovie(int movieId) {
+        return latestByMovie.get(movieId, NONE);
+    }
+
+    int previousForMovie(int entry) {
+        return previousByMovie[entry];
+    }
+
+    private void grow() {
+        resize(customerIds.length + (customerIds.length >> 1) + 1);
+    }
+
+    private void resize(int capacity) {
+        customerIds = java.util.Arrays.copyOf(customerIds, capacity);
+        movieIds = java.util.Arrays.copyOf(movieIds, capacity);
+        timestamps = java.util.Arrays.copyOf(timestamps, capacity);
+        dueAts = java.util.Arrays.copyOf(dueAts, capacity);
+        returnedAts = java.util.Arrays.copyOf(returnedAts, capacity);
+        previousByCustomer = java.util.Arrays.copyOf(previousByCustomer, capacity);
+        previousByMovie = java.util.Arrays.copyOf(previousByMovie, capacity);
+    }
+}
@@ -0,0 +1,216 @@
+package project;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+class RentalServer implements AutoCloseable {
+    static final int DEFAULT_PORT = 7070;
+    private static final int MAX_LINE_BYTES = 8192;
+
+    private final RentalService service;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ExecutorService workers;
+    private final ConcurrentLinkedQueue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private final Thread loop;
+    private volatile boolean running = true;
+
+    RentalServer(RentalService service, int port, int workerThreads) throws IOException {
+        this.service = service;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.workers = Executors.newFixedThreadPool(workerThreads, task -> {
+            Thread thread = new Thread(task, "rental-server-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loop = new Thread(this::run, "rental-server");
+        loop.setDaemon(true);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Project.openCatalog();
+        Project.openJournal();
+        Metrics.startFromProperties();
+        Project.startDueDateChecker();
+        RentalServer server = new RentalServer(Project.service, port, Runtime.getRuntime().availableProcessors() * 2);
+        server.start();
+        System.out.println("Rental server listening on " + server.address());
+        server.loop.join();
+    }
+
+    void start() {
+        loop.start();
+    }
+
+    InetSocketAddress address() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) key.channel().close();
+        selector.close();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection done;
+                while ((done = completed.poll()) != null) {
+                    try {
+                        finished(done);
+                    } catch (IOException e) {
+                        done.key.cancel();
+                        done.channel.close();
+                    }
+                }
+                for (java.util.Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) read(connection);
+                            if (key.isValid() && key.isWritable()) write(connection);
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) System.out.println("Rental server stopped: " + e.getMessage());
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        int read = connection.channel.read(connection.inbound);
+        if (read < 0) {
+            connection.key.cancel();
+            connection.channel.close();
+            return;
+        }
+        ByteBuffer inbound = connection.inbound;
+        inbound.flip();
+        int lineStart = inbound.position();
+        for (int i = inbound.position(); i < inbound.limit(); i++) {
+            if (inbound.get(i) != '\n') continue;
+            int end = i > lineStart && inbound.get(i - 1) == '\r' ? i - 1 : i;
+            byte[] line = new byte[end - lineStart];
+            inbound.get(lineStart, line);
+            connection.lines.add(new String(line, StandardCharsets.UTF_8));
+            lineStart = i + 1;
+        }
+        inbound.position(lineStart);
+        inbound.compact();
+        if (!inbound.hasRemaining()) throw new IOException("Command line too long");
+        dispatch(connection);
+    }
+
+    private void dispatch(Connection connection) {
+        if (connection.busy || connection.lines.isEmpty()) return;
+        connection.busy = true;
+        String[] batch = connection.lines.toArray(new String[0]);
+        connection.lines.clear();
+        workers.execute(() -> {
+            StringBuilder response = new StringBuilder();
+            try {
+                for (String line : batch) {
+                    try {
+                        response.append(execute(line)).append('\n');
+                    } catch (RuntimeException e) {
+                        response.append("ERR Internal error: ").append(e).append('\n');
+                    }
+                }
+            } finally {
+                connection.response = StandardCharsets.UTF_8.encode(response.toString());
+                completed.add(connection);
+                selector.wakeup();
+            }
+        });
+    }
+
+    private void finished(Connection connection) throws IOException {
+        connection.busy = false;
+        if (!connection.key.isValid()) return;
+        connection.outbound.add(connection.response);
+        connection.response = null;
+        write(connection);
+        dispatch(connection);
+    }
+
+    private void write(Connection connection) throws IOException {
+        while (!connection.outbound.isEmpty()) {
+            ByteBuffer buffer = connection.outbound.peek();
+            connection.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.outbound.poll();
+        }
+        connection.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    String execute(String line) {
+        return BatchRunner.execute(service, BatchRunner.parse(line));
+    }
+
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer inbound = ByteBuffer.allocate(MAX_LINE_BYTES);
+        final java.util.ArrayDeque<String> lines = new java.util.ArrayDeque<>();
+        final java.util.ArrayDeque<ByteBuffer> outbound = new java.util.ArrayDeque<>();
+        SelectionKey key;
+        boolean busy;
+        volatile ByteBuffer response;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package project;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+class ServiceResult<T> {
+    final boolean ok;
+    final T value;
+    final String message;
+
+    private ServiceResult(boolean ok, T value, String message) {
+        this.ok = ok;
+        this.value = value;
+        this.message = message;
+    }
+
+    static <T> ServiceResult<T> ok(T value, String message) {
+        return new ServiceResult<>(true, value, message);
+    }
+
+    static <T> ServiceResult<T> failure(String message) {
+        return new ServiceResult<>(false, null, message);
+    }
+
+    static <T> ServiceResult<T> failure(T value, String message) {
+        return new ServiceResult<>(false, value, message);
+    }
+
+    public String toString() {
+        return (ok ? "OK " : "ERR ") + message;
+    }
+}
+
+class RentalService {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    <T> T exclusive(java.util.function.Supplier<T> body) {
+        lock.writeLock().lock();
+        try {
+            return body.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    java.util.concurrent.locks.Lock writeLock() {
+        return lock.writeLock();
+    }
+
+    private <T> ServiceResult<T> mutate(java.util.function.Supplier<ServiceResult<T>> body) {
+        RentalJournal journal;
+        ServiceResult<T> result;
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            journal = Project.journal;
+            if (journal != null && journal.failure() != null) {
+                return ServiceResult.failure("Store is read-only after a journal write failure: " + reason(journal.failure()));
+            }
+            result = body.get();
+            lsn = journal != null ? journal.lastLsn() : 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (journal == null) return result;
+        try {
+            journal.awaitDurable(lsn);
+            return result;
+        } catch (java.io.IOException e) {
+            return ServiceResult.failure(result.value, "Journal write failed, store is now read-only: " + reason(e));
+        }
+    }
+
+    private static String reason(java.io.IOException e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    ServiceResult<Customer> addCustomer(int id, String name) {
+        if (name == null || name.isBlank()) return ServiceResult.failure("Customer name is required");
+        return mutate(() -> {
+            if (Project.findCustomer(id) != null) return ServiceResult.failure("Customer " + id + " already exists");
+            Customer customer = Project.registerCustomer(id, name);
+            Project.checkpointIfDue();
+            return ServiceResult.ok(customer, "Customer added: " + customer);
+        });
+    }
+
+    ServiceResult<Movie> addMovie(int id, String title, String genre) {
+        if (title == null || title.isBlank()) return ServiceResult.failure("Movie title is required");
+        if (genre == null || genre.isBlank()) return ServiceResult.failure("Movie genre is required");
+        return mutate(() -> {
+            if (Project.findMovie(id) != null) return ServiceResult.failure("Movie " + id + " already exists");
+            Movie movie = Project.registerMovie(id, title, genre);
+            Project.checkpointIfDue();
+            return ServiceResult.ok(movie, "Movie added: " + movie);
+        });
+    }
+
+    ServiceResult<Movie> addCopies(int movieId, int count) {
+        if (count <= 0) return ServiceResult.failure("Number of copies must be positive");
+        return mutate(() -> {
+            Movie movie = Project.findMovie(movieId);
+            if (movie == null) return ServiceResult.failure("Movie not found");
+            if (movie.copies > Integer.MAX_VALUE - count) {
+                return ServiceResult.failure("Movie " + movieId + " cannot hold more than " + Integer.MAX_VALUE + " copies");
+            }
+            Project.addCopies(movie, count);
+            Project.checkpointIfDue();
+            return ServiceResult.ok(movie, "Copies added: " + movie);
+        });
+    }
+
+    ServiceResult<Request> enqueueRental(int customerId, int movieId) {
+        return mutate(() -> {
+            Request request = new Request(customerId, movieId);
+            Project.submitRequest(request);
+            Project.checkpointIfDue();
+            return ServiceResult.ok(request, "Request added to queue");
+        });
+    }
+
+    ServiceResult<RentalStatus> processRequest() {
+        return mutate(() -> {
+            Request request = Project.queue.peek();
+            if (request == null) return ServiceResult.failure("No pending requests");
+            ProcessRequestEvent event = new ProcessRequestEvent();
+            event.begin();
+            long start = System.nanoTime();
+            RentalStatus status = Project.inTransaction(() -> {
+                Project.nextRequest();
+                return Project.rentOrWait(request);
+            });
+            Metrics.processTimer.stop(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.customerId = request.customerId;
+                event.movieId = request.movieId;
+                event.status = status.name();
+                event.commit();
+            }
+            Project.checkpointIfDue();
+            return describe(status, request);
+        });
+    }
+
+    ServiceResult<BatchResult> processAll() {
+        return mutate(() -> {
+            if (Project.queue.isEmpty()) return ServiceResult.failure("No pending requests");
+            BatchResult result = Project.inTransaction(() -> {
+                java.util.List<Request> pending = new java.util.ArrayList<>(Project.queue.size());
+                Request request;
+                while ((request = Project.nextRequest()) != null) {
+                    pending.add(request);
+                }
+                return Project.processBatch(pending);
+            });
+            Project.checkpointIfDue();
+            return ServiceResult.ok(result, result.toString());
+        });
+    }
+
+    ServiceResult<RentalStatus> rent(int customerId, int movieId) {
+        return mutate(() -> {
+            Request request = new Request(customerId, movieId);
+            return describe(Project.rent(request), request);
+        });
+    }
+
+    ServiceResult<ReturnStatus> returnMovie(int movieId) {
+        return mutate(() -> {
+            ReturnStatus status = Project.returnMovie(movieId);
+            switch (status) {
+                case RENTAL_NOT_FOUND: return ServiceResult.failure(status, "Movie " + movieId + " has never been rented");
+                case ALREADY_RETURNED: return ServiceResult.failure(status, "Movie " + movieId + " is not currently rented");
+                default:
+                    Movie movie = Project.findMovie(movieId);
+                    return ServiceResult.ok(status, "Returned: " + (movie != null ? movie.title() : "Movie " + movieId));
+            }
+        });
+    }
+
+    int expireDueRentals(long now) {
+        ServiceResult<Integer> expired = mutate(() -> {
+            int count = Project.expireDueRentals(now);
+            return ServiceResult.ok(count, count + " rentals expired");
+        });
+        return expired.ok ? expired.value : 0;
+    }
+
+    ServiceResult<String> undo() {
+        return undoOrRedo(false);
+    }
+
+    ServiceResult<String> redo() {
+        return undoOrRedo(true);
+    }
+
+    private ServiceResult<String> undoOrRedo(boolean redo) {
+        return mutate(() -> {
+            UndoEvent event = new UndoEvent();
+            event.begin();
+            long start = System.nanoTime();
+            String description = redo ? Project.redo() : Project.undo();
+            Metrics.undoTimer.stop(start);
+            if (description == null) return ServiceResult.failure(redo ? "Nothing to redo" : "Nothing to undo");
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = description;
+                event.redo = redo;
+                event.commit();
+            }
+            Project.checkpointIfDue();
+            return ServiceResult.ok(description, (redo ? "Redone: " : "Undone: ") + description);
+        });
+    }
+
+    ServiceResult<ReturnStatus> undoRental(int rentalId) {
+        return mutate(() -> {
+            String description = rentalId >= 0 && rentalId < Project.history.size() ? Project.describeRental(rentalId) : null;
+            ReturnStatus status = Project.undoRental(rentalId);
+            Project.checkpointIfDue();
+            switch (status) {
+                case RENTAL_NOT_FOUND: return ServiceResult.failure(status, "Rental " + rentalId + " not found");
+                case ALREADY_RETURNED: return ServiceResult.failure(status, "Rental " + rentalId + " is no longer active");
+                default: return ServiceResult.ok(status, "Undone rental " + rentalId + ": " + description);
+            }
+        });
+    }
+
+    ServiceResult<Void> connect(int customer1, int customer2) {
+        return mutate(() -> {
+            if (Project.findCustomer(customer1) == null || Project.findCustomer(customer2) == null) {
+                return ServiceResult.failure("One or both customers not found");
+            }
+            Project.connectCustomers(customer1, customer2);
+            Project.checkpointIfDue();
+            return ServiceResult.ok(null, "Connection added between customers " + customer1 + " and " + customer2);
+        });
+    }
+
+    ServiceResult<BulkImporter.Result> importData(java.nio.file.Path directory, BulkImporter.Progress progress) {
+        if (!java.nio.file.Files.isDirectory(directory)) return ServiceResult.failure("Not a directory: " + directory);
+        return mutate(() -> {
+            try {
+                BulkImporter.Result result = new BulkImporter(progress).importDirectory(directory);
+                return ServiceResult.ok(result, result.toString());
+            } catch (java.io.IOException e) {
+                return ServiceResult.failure("Import failed: " + e.getMessage());
+            } finally {
+                synchronized (Project.history) {
+                    Project.transactions.clear();
+                }
+                if (Project.journal != null) Project.checkpoint();
+            }
+        });
+    }
+
+    ServiceResult<Customer> customer(int customerId) {
+        lock.readLock().lock();
+        try {
+            Customer customer = Project.findCustomer(customerId);
+            return customer != null ? ServiceResult.ok(customer, customer.toString()) : ServiceResult.failure("Customer not found");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ServiceResult<java.util.List<Integer>> friends(int customerId) {
+        lock.readLock().lock();
+        try {
+            Customer customer = Project.findCustomer(customerId);
+            if (customer == null) return ServiceResult.failure("Customer not found");
+            java.util.List<Integer> friends = Project.recommendationGraph.getRecommendations(customerId);
+            return ServiceResult.ok(friends, friends.size() + " friends of Customer " + customerId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ServiceResult<java.util.List<Recommendation>> recommendations(int customerId, int k) {
+        if (k < 1) return ServiceResult.failure("k must be positive");
+        if (k > RecommendationEngine.MAX_K) return ServiceResult.failure("k must be at most " + RecommendationEngine.MAX_K);
+        lock.readLock().lock();
+        try {
+            Customer customer = Project.findCustomer(customerId);
+            if (customer == null) return ServiceResult.failure("Customer not found");
+            java.util.List<Recommendation> recommended = Project.recommender.recommend(customerId, k);
+            return ServiceResult.ok(recommended, recommended.size() + " recommendations for Customer " + customerId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ServiceResult<MovieQueryIndex.Matches> searchMovies(MovieQueryIndex.Query query, int limit) {
+        lock.readLock().lock();
+        try {
+            MovieQueryIndex.Matches matches = query.matches(limit);
+            return matches.total == 0 ? ServiceResult.failure(matches, "No matching movies")
+                    : ServiceResult.ok(matches, matches.total + " matching movies");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ServiceResult<String> communities(int top) {
+        Project.graphAnalytics.refresh();
+        lock.readLock().lock();
+        try {
+            String report = Project.describeCommunities(top);
+            return ServiceResult.ok(report, report);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ServiceResult<Integer> exportCatalog(java.nio.file.Path file) {
+        java.util.List<Movie> all;
+        lock.readLock().lock();
+        try {
+            all = Project.catalogMovies();
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            MappedCatalog.write(file, all);
+            return ServiceResult.ok(all.size(), "Exported " + all.size() + " movies to " + file);
+        } catch (java.io.IOException e) {
+            return ServiceResult.failure("Export failed: " + e.getMessage());
+        }
+    }
+
+    ServiceResult<Listings.Page> list(Listings.View view, String cursor, int pageSize, Appendable out) {
+        return list(view, cursor, pageSize, true, out);
+    }
+
+    private ServiceResult<Listings.Page> list(Listings.View view, String cursor, int pageSize, boolean repeatHeaders, Appendable out) {
+        lock.readLock().lock();
+        try {
+            Listings.Page page = Listings.write(view, cursor, pageSize, repeatHeaders, out);
+            return ServiceResult.ok(page, page.rows + " rows" + (page.next != null ? ", next cursor " + page.next : ""));
+        } catch (IllegalArgumentException e) {
+            return ServiceResult.failure(e.getMessage());
+        } catch (java.io.IOException e) {
+            return ServiceResult.failure("Could not write listing: " + e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    ServiceResult<Long> exportListing(Listings.View view, java.nio.file.Path file) {
+        long start = System.nanoTime();
+        long rows = 0;
+        try (java.io.Writer out = java.nio.file.Files.newBufferedWriter(file, java.nio.charset.StandardCharsets.UTF_8)) {
+            String cursor = null;
+            do {
+                ServiceResult<Listings.Page> page = list(view, cursor, Listings.EXPORT_PAGE_SIZE, false, out);
+                if (!page.ok) return ServiceResult.failure(rows, page.message);
+                rows += page.value.rows;
+                cursor = page.value.next;
+            } while (cursor != null);
+        } catch (java.io.IOException e) {
+            return ServiceResult.failure(rows, "Could not write " + file + ": " + e.getMessage());
+        }
+        return ServiceResult.ok(rows, String.format("Wrote %,d rows to %s in %d ms", rows, file,
+                (System.nanoTime() - start) / 1_000_000));
+    }
+
+    void checkpointIfDue() {
+        lock.writeLock().lock();
+        try {
+            Project.checkpointIfDue();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int pendingRequests() {
+        lock.readLock().lock();
+        try {
+            return Project.queue.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static ServiceResult<RentalStatus> describe(RentalStatus status, Request request) {
+        switch (status) {
+            case CUSTOMER_NOT_FOUND: return ServiceResult.failure(status, "Customer not found");
+            case MOVIE_NOT_FOUND: return ServiceResult.failure(status, "Movie not found");
+            case ALREADY_RENTED: return ServiceResult.failure(status, "Movie already rented");
+            case WAITLISTED: {
+                Movie movie = Project.findMovie(request.movieId);
+                int position = Project.waitlistPosition(movie, request.customerId);
+                if (position < 0) return ServiceResult.ok(status, "Waitlisted request fulfilled: " + movie.title());
+                return ServiceResult.ok(status, "Waitlisted: " + Project.findCustomer(request.customerId).name()
+                        + " is number " + position + " in line for " + movie.title());
+            }
+            default:
+                return ServiceResult.ok(status, "Processed: " + Project.findCustomer(request.customerId).name()
+                        + " rented " + Project.findMovie(request.movieId).title());
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package project;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Standalone prototype, exercised only by the "shards" benchmark. The menu, RentalService, the
+// server, the journal, undo and waitlists all use Project's store and never dispatch here.
+class ShardedStore {
+    private static final int SPINS_BEFORE_PARKING = 64;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private static final byte ADD_CUSTOMER = 0;
+    private static final byte ADD_MOVIE = 1;
+    private static final byte REMOVE_CUSTOMER = 2;
+    private static final byte RENT = 3;
+    private static final byte PREPARE = 4;
+    private static final byte VOTE = 5;
+    private static final byte COMMIT = 6;
+    private static final byte ABORT = 7;
+    private static final byte RETURN = 8;
+    private static final byte RELEASED = 9;
+
+    private final Partition[] partitions;
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder[] rentals = new LongAdder[RentalStatus.values().length];
+    private final LongAdder[] returns = new LongAdder[ReturnStatus.values().length];
+    private final LongAdder crossPartition = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private volatile boolean running;
+
+    ShardedStore(int partitionCount, int queueCapacity) {
+        if (partitionCount < 1) throw new IllegalArgumentException("partitionCount must be positive");
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) partitions[i] = new Partition(i, queueCapacity);
+        for (int i = 0; i < rentals.length; i++) rentals[i] = new LongAdder();
+        for (int i = 0; i < returns.length; i++) returns[i] = new LongAdder();
+    }
+
+    int partitionCount() {
+        return partitions.length;
+    }
+
+    int partitionOf(int id) {
+        return Math.floorMod(IntObjectMap.mix(id), partitions.length);
+    }
+
+    synchronized void start() {
+        if (running) return;
+        running = true;
+        for (Partition partition : partitions) {
+            partition.thread = new Thread(partition, "rental-partition-" + partition.index);
+            partition.thread.setDaemon(true);
+            partition.thread.start();
+        }
+    }
+
+    void addCustomer(Customer customer) {
+        submit(partitionOf(customer.id), new Message(ADD_CUSTOMER, customer.id, 0, customer));
+    }
+
+    void addMovie(Movie movie) {
+        submit(partitionOf(movie.id), new Message(ADD_MOVIE, 0, movie.id, movie));
+    }
+
+    void removeCustomer(int customerId) {
+        submit(partitionOf(customerId), new Message(REMOVE_CUSTOMER, customerId, 0, null));
+    }
+
+    void rent(Request request) {
+        submit(partitionOf(request.customerId), new Message(RENT, request.customerId, request.movieId, request));
+    }
+
+    void returnMovie(int movieId) {
+        submit(partitionOf(movieId), new Message(RETURN, 0, movieId, null));
+    }
+
+    private void submit(int partition, Message message) {
+        pending.incrementAndGet();
+        message.submittedNanos = System.nanoTime();
+        int attempts = 0;
+        long parkNanos = 1_000;
+        while (!partitions[partition].inbox.offer(message)) {
+            if (++attempts < SPINS_BEFORE_PARKING) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(MAX_PARK_NANOS, parkNanos * 2);
+            }
+        }
+    }
+
+    void awaitQuiescence() throws InterruptedException {
+        while (pending.get() > 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    synchronized void shutdown() throws InterruptedException {
+        if (!running) return;
+        awaitQuiescence();
+        running = false;
+        for (Partition partition : partitions) {
+            LockSupport.unpark(partition.thread);
+            partition.thread.join();
+        }
+    }
+
+    long count(RentalStatus status) {
+        return rentals[status.ordinal()].sum();
+    }
+
+    long count(ReturnStatus status) {
+        return returns[status.ordinal()].sum();
+    }
+
+    long crossPartitionRentals() {
+        return crossPartition.sum();
+    }
+
+    long abortedRentals() {
+        return aborted.sum();
+    }
+
+    LatencyHistogram latency() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (Partition partition : partitions) merged.merge(partition.latency);
+        return merged;
+    }
+
+    int customerCount() {
+        int count = 0;
+        for (Partition partition : partitions) count += partition.customers.size();
+        return count;
+    }
+
+    int movieCount() {
+        int count = 0;
+        for (Partition partition : partitions) count += partition.catalog.size();
+        return count;
+    }
+
+    int activeRentals() {
+        int count = 0;
+        for (Partition partition : partitions) count += partition.ledger.activeCount();
+        return count;
+    }
+
+    String verify() {
+        long customerSide = 0;
+        for (Partition partition : partitions) {
+            customerSide += partition.customerRentals;
+            for (Movie movie : partition.catalog) {
+                int active = 0;
+                for (int entry = partition.ledger.latestForMovie(movie.id); entry != RentalLedger.NONE;
+                        entry = partition.ledger.previousForMovie(entry)) {
+                    if (partition.ledger.isActive(entry)) active++;
+                }
+                if (active + movie.available != movie.copies) {
+                    return "Movie " + movie.id + " on partition " + partition.index + " has " + active + " active rentals and "
+                            + movie.available + " of " + movie.copies + " copies available";
+                }
+            }
+        }
+        if (customerSide != activeRentals()) {
+            return "Customer partitions count " + customerSide + " active rentals, movie partitions " + activeRentals();
+        }
+        return null;
+    }
+
+    private static final class Message {
+        byte kind;
+        int customerId;
+        int movieId;
+        Object ref;
+        int origin;
+        int target;
+        RentalStatus status;
+        long submittedNanos;
+
+        Message(byte kind, int customerId, int movieId, Object ref) {
+            this.kind = kind;
+            this.customerId = customerId;
+            this.movieId = movieId;
+            this.ref = ref;
+        }
+    }
+
+    private final class Partition implements Runnable {
+        final int index;
+        final MpmcQueue<Message> inbox;
+        final java.util.ArrayDeque<Message> overflow = new java.util.ArrayDeque<>();
+        final IntObjectMap<Customer> customers = new IntObjectMap<>();
+        final IntObjectMap<Movie> movies = new IntObjectMap<>();
+        final java.util.ArrayList<Movie> catalog = new java.util.ArrayList<>();
+        final RentalLedger ledger = new RentalLedger();
+        final LatencyHistogram latency = new LatencyHistogram();
+        long customerRentals;
+        Thread thread;
+
+        Partition(int index, int queueCapacity) {
+            this.index = index;
+            this.inbox = new MpmcQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            int idleSpins = 0;
+            while (true) {
+                if (!overflow.isEmpty()) flush();
+                Message message = inbox.poll();
+                if (message == null) {
+                    if (!running && overflow.isEmpty()) return;
+                    if (++idleSpins < 100) {
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(50_000);
+                    }
+                    continue;
+                }
+                idleSpins = 0;
+                handle(message);
+            }
+        }
+
+        private void handle(Message message) {
+            switch (message.kind) {
+                case ADD_CUSTOMER:
+                    customers.put(message.customerId, (Customer) message.ref);
+                    done();
+                    break;
+                case ADD_MOVIE:
+                    Movie movie = (Movie) message.ref;
+                    if (movies.put(movie.id, movie) == null) catalog.add(movie);
+                    done();
+                    break;
+                case REMOVE_CUSTOMER:
+                    customers.remove(message.customerId);
+                    done();
+                    break;
+                case RENT:
+                    rent(message);
+                    break;
+                case PREPARE:
+                    message.status = reserve(message.movieId);
+                    message.kind = VOTE;
+                    send(message.origin, message);
+                    break;
+                case VOTE:
+                    decide(message);
+                    break;
+                case COMMIT:
+                    ledger.append(message.customerId, message.movieId, System.currentTimeMillis(),
+                            System.currentTimeMillis() + Project.LOAN_PERIOD_MILLIS);
+                    complete(message, RentalStatus.PROCESSED);
+                    break;
+                case ABORT:
+                    movies.get(message.movieId).release();
+                    complete(message, message.status);
+                    break;
+                case RETURN:
+                    returnMovie(message);
+                    break;
+                case RELEASED:
+                    customerReturned();
+                    complete(message, ReturnStatus.RETURNED);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown message kind " + message.kind);
+            }
+        }
+
+        private void rent(Message message) {
+            if (!customers.containsKey(message.customerId)) {
+                complete(message, RentalStatus.CUSTOMER_NOT_FOUND);
+                return;
+            }
+            int owner = partitionOf(message.movieId);
+            if (owner != index) {
+                crossPartition.increment();
+                message.kind = PREPARE;
+                message.origin = index;
+                send(owner, message);
+                return;
+            }
+            RentalStatus status = reserve(message.movieId);
+            if (status == RentalStatus.PROCESSED) {
+                long now = System.currentTimeMillis();
+                ledger.append(message.customerId, message.movieId, now, now + Project.LOAN_PERIOD_MILLIS);
+                customerRented();
+            }
+            complete(message, status);
+        }
+
+        private RentalStatus reserve(int movieId) {
+            Movie movie = movies.get(movieId);
+            if (movie == null) return RentalStatus.MOVIE_NOT_FOUND;
+            return movie.tryRent() ? RentalStatus.PROCESSED : RentalStatus.ALREADY_RENTED;
+        }
+
+        private void decide(Message message) {
+            if (message.status != RentalStatus.PROCESSED) {
+                complete(message, message.status);
+                return;
+            }
+            if (customers.containsKey(message.customerId)) {
+                customerRented();
+                message.kind = COMMIT;
+            } else {
+                aborted.increment();
+                message.kind = ABORT;
+                message.status = RentalStatus.CUSTOMER_NOT_FOUND;
+            }
+            send(partitionOf(message.movieId), message);
+        }
+
+        private void returnMovie(Message message) {
+            int entry = ledger.latestForMovie(message.movieId);
+            if (entry == RentalLedger.NONE) {
+                complete(message, ReturnStatus.RENTAL_NOT_FOUND);
+                return;
+            }
+            while (entry != RentalLedger.NONE && !ledger.isActive(entry)) entry = ledger.previousForMovie(entry);
+            if (entry == RentalLedger.NONE) {
+                complete(message, ReturnStatus.ALREADY_RETURNED);
+                return;
+            }
+            ledger.markReturned(entry, System.currentTimeMillis());
+            movies.get(message.movieId).release();
+            message.customerId = ledger.customerId(entry);
+            int owner = partitionOf(message.customerId);
+            if (owner == index) {
+                customerReturned();
+                complete(message, ReturnStatus.RETURNED);
+            } else {
+                message.kind = RELEASED;
+                send(owner, message);
+            }
+        }
+
+        private void customerRented() {
+            customerRentals++;
+        }
+
+        private void customerReturned() {
+            customerRentals--;
+        }
+
+        private void send(int partition, Message message) {
+            message.target = partition;
+            if (!overflow.isEmpty() || !partitions[partition].inbox.offer(message)) overflow.add(message);
+        }
+
+        private void flush() {
+            Message message;
+            while ((message = overflow.peek()) != null && partitions[message.target].inbox.offer(message)) {
+                overflow.poll();
+            }
+        }
+
+        private void complete(Message message, RentalStatus status) {
+            rentals[status.ordinal()].increment();
+            latency.record(System.nanoTime() - message.submittedNanos);
+            done();
+        }
+
+        private void complete(Message message, ReturnStatus status) {
+            returns[status.ordinal()].increment();
+            latency.record(System.nanoTime() - message.submittedNanos);
+            done();
+        }
+
+        private void done() {
+            pending.decrementAndGet();
+        }
+    }
+}
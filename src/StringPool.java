@@ -0,0 +1,180 @@
+package project;
+
+import java.nio.charset.StandardCharsets;
+
+class StringPool {
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int MAX_PAGES = 1 << (31 - PAGE_BITS);
+
+    private volatile byte[][] pages = new byte[16][];
+    private int pageCount;
+    private int position = PAGE_SIZE;
+    private int[] table = new int[1024];
+    private int count;
+    private long bytes;
+
+    synchronized int intern(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        return intern(encoded, 0, encoded.length);
+    }
+
+    synchronized int intern(byte[] utf8, int from, int to) {
+        int hash = hash(utf8, from, to);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (int stored = table[slot]; stored != 0; stored = table[slot = (slot + 1) & mask]) {
+            if (sameBytes(stored - 1, utf8, from, to)) return stored - 1;
+        }
+        int handle = append(utf8, from, to);
+        table[slot] = handle + 1;
+        if (++count * 4L > table.length * 3L) rehash(table.length << 1);
+        return handle;
+    }
+
+    String get(int handle) {
+        byte[] page = pages[handle >>> PAGE_BITS];
+        int offset = handle & (PAGE_SIZE - 1);
+        int length = readLength(page, offset);
+        return new String(page, offset + lengthBytes(length), length, StandardCharsets.UTF_8);
+    }
+
+    int compareIgnoreCase(int first, int second) {
+        if (first == second) return 0;
+        byte[][] pages = this.pages;
+        byte[] a = pages[first >>> PAGE_BITS];
+        byte[] b = pages[second >>> PAGE_BITS];
+        int i = first & (PAGE_SIZE - 1);
+        int j = second & (PAGE_SIZE - 1);
+        int aLength = readLength(a, i);
+        int bLength = readLength(b, j);
+        i += lengthBytes(aLength);
+        j += lengthBytes(bLength);
+        int common = Math.min(aLength, bLength);
+        for (int k = 0; k < common; k++) {
+            byte x = a[i + k];
+            byte y = b[j + k];
+            if ((x | y) < 0) return get(first).toLowerCase(java.util.Locale.ROOT).compareTo(get(second).toLowerCase(java.util.Locale.ROOT));
+            if (x != y) {
+                int difference = lower(x) - lower(y);
+                if (difference != 0) return difference;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    int compareToPrefix(int handle, String lowerPrefix) {
+        byte[] page = pages[handle >>> PAGE_BITS];
+        int offset = handle & (PAGE_SIZE - 1);
+        int length = readLength(page, offset);
+        offset += lengthBytes(length);
+        int common = Math.min(length, lowerPrefix.length());
+        for (int k = 0; k < common; k++) {
+            byte x = page[offset + k];
+            char c = lowerPrefix.charAt(k);
+            if (x < 0 || c >= 0x80) {
+                String key = get(handle).toLowerCase(java.util.Locale.ROOT);
+                return key.startsWith(lowerPrefix) ? 0 : key.compareTo(lowerPrefix);
+            }
+            int difference = lower(x) - c;
+            if (difference != 0) return difference;
+        }
+        return length >= lowerPrefix.length() ? 0 : -1;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized long footprint() {
+        long allocated = (long) pages.length * 4 + table.length * 4L;
+        for (int i = 0; i < pageCount; i++) allocated += pages[i].length;
+        return allocated;
+    }
+
+    private int append(byte[] utf8, int from, int to) {
+        int length = to - from;
+        int needed = lengthBytes(length) + length;
+        if (position + needed > PAGE_SIZE) {
+            if (pageCount == MAX_PAGES) throw new IllegalStateException("String pool is full");
+            if (pageCount == pages.length) pages = java.util.Arrays.copyOf(pages, Math.min(pageCount * 2, MAX_PAGES));
+            pages[pageCount++] = new byte[Math.max(PAGE_SIZE, needed)];
+            position = 0;
+        }
+        byte[] page = pages[pageCount - 1];
+        int handle = (pageCount - 1) << PAGE_BITS | position;
+        int remaining = length;
+        while (remaining >= 0x80) {
+            page[position++] = (byte) (remaining | 0x80);
+            remaining >>>= 7;
+        }
+        page[position++] = (byte) remaining;
+        System.arraycopy(utf8, from, page, position, length);
+        position = needed > PAGE_SIZE ? PAGE_SIZE : position + length;
+        bytes += needed;
+        return handle;
+    }
+
+    private boolean sameBytes(int handle, byte[] utf8, int from, int to) {
+        byte[] page = pages[handle >>> PAGE_BITS];
+        int offset = handle & (PAGE_SIZE - 1);
+        int length = readLength(page, offset);
+        if (length != to - from) return false;
+        offset += lengthBytes(length);
+        for (int i = from; i < to; i++) {
+            if (page[offset++] != utf8[i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        int mask = capacity - 1;
+        for (int stored : table) {
+            if (stored == 0) continue;
+            byte[] page = pages[(stored - 1) >>> PAGE_BITS];
+            int offset = (stored - 1) & (PAGE_SIZE - 1);
+            int length = readLength(page, offset);
+            offset += lengthBytes(length);
+            int slot = hash(page, offset, offset + length) & mask;
+            while (rehashed[slot] != 0) slot = (slot + 1) & mask;
+            rehashed[slot] = stored;
+        }
+        table = rehashed;
+    }
+
+    private static int hash(byte[] data, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) hash = 31 * hash + data[i];
+        return IntObjectMap.mix(hash);
+    }
+
+    private static int readLength(byte[] page, int offset) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = page[offset++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return length;
+    }
+
+    private static int lengthBytes(int length) {
+        int count = 1;
+        while (length >= 0x80) {
+            length >>>= 7;
+            count++;
+        }
+        return count;
+    }
+
+    private static int lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+}
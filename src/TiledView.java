@@ -0,0 +1,174 @@
+package project;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import javax.swing.JPanel;
+
+abstract class TiledView extends JPanel {
+    private static final long serialVersionUID = 1L;
+    static final int TILE_SIZE = 256;
+    private static final int MIN_ZOOM = -48;
+    private static final int MAX_ZOOM = 16;
+    private static final long FRAME_BUDGET_NANOS = Long.getLong("rental.view.frameBudgetMs", 12) * 1_000_000;
+    private static final int MAX_CACHED_TILES = Integer.getInteger("rental.view.cachedTiles", 160);
+
+    private final java.util.LinkedHashMap<Long, BufferedImage> tiles = new java.util.LinkedHashMap<Long, BufferedImage>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(java.util.Map.Entry<Long, BufferedImage> eldest) {
+            return size() > MAX_CACHED_TILES;
+        }
+    };
+    private int zoom;
+    private double viewX;
+    private double viewY;
+    private boolean fitted;
+    private long tilesRendered;
+
+    TiledView() {
+        setPreferredSize(new Dimension(800, 600));
+        setBackground(Color.WHITE);
+        MouseAdapter navigation = new MouseAdapter() {
+            private int lastX, lastY;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lastX = e.getX();
+                lastY = e.getY();
+                if (e.getClickCount() == 2) {
+                    fitToContent(getWidth(), getHeight());
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                pan(lastX - e.getX(), lastY - e.getY());
+                lastX = e.getX();
+                lastY = e.getY();
+                repaint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomAt(e.getX(), e.getY(), -e.getWheelRotation());
+                repaint();
+            }
+        };
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
+    }
+
+    abstract Rectangle2D contentBounds();
+
+    abstract void renderTile(Graphics2D g, Rectangle2D visible, double scale);
+
+    abstract String emptyMessage();
+
+    double scale() {
+        return Math.pow(2, zoom / 4.0);
+    }
+
+    void pan(double dx, double dy) {
+        viewX += dx;
+        viewY += dy;
+    }
+
+    void zoomAt(int screenX, int screenY, int steps) {
+        int next = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom + steps));
+        if (next == zoom) return;
+        double worldX = (viewX + screenX) / scale();
+        double worldY = (viewY + screenY) / scale();
+        zoom = next;
+        viewX = worldX * scale() - screenX;
+        viewY = worldY * scale() - screenY;
+    }
+
+    void fitToContent(int width, int height) {
+        Rectangle2D bounds = contentBounds();
+        if (bounds == null || width <= 0 || height <= 0) return;
+        double fit = Math.min(width / Math.max(bounds.getWidth(), 1), height / Math.max(bounds.getHeight(), 1));
+        zoom = Math.max(MIN_ZOOM, Math.min(0, (int) Math.floor(4 * Math.log(fit) / Math.log(2))));
+        viewX = bounds.getCenterX() * scale() - width / 2.0;
+        viewY = bounds.getCenterY() * scale() - height / 2.0;
+        fitted = true;
+    }
+
+    void contentChanged() {
+        tiles.clear();
+    }
+
+    void resetView() {
+        fitted = false;
+        tiles.clear();
+    }
+
+    int cachedTiles() {
+        return tiles.size();
+    }
+
+    long tilesRendered() {
+        return tilesRendered;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        if (contentBounds() == null) {
+            g2d.setColor(Color.BLACK);
+            g2d.drawString(emptyMessage(), getWidth() / 2 - 50, getHeight() / 2);
+            return;
+        }
+        if (!renderFrame(g2d, getWidth(), getHeight(), FRAME_BUDGET_NANOS)) repaint();
+    }
+
+    boolean renderFrame(Graphics2D g, int width, int height, long budgetNanos) {
+        if (!fitted) fitToContent(width, height);
+        long start = System.nanoTime();
+        boolean complete = true;
+        int firstColumn = (int) Math.floor(viewX / TILE_SIZE);
+        int firstRow = (int) Math.floor(viewY / TILE_SIZE);
+        int lastColumn = (int) Math.floor((viewX + width - 1) / TILE_SIZE);
+        int lastRow = (int) Math.floor((viewY + height - 1) / TILE_SIZE);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                long key = ((long) (zoom - MIN_ZOOM) << 56) | ((column & 0xFFFFFFFL) << 28) | (row & 0xFFFFFFFL);
+                BufferedImage tile = tiles.get(key);
+                if (tile == null) {
+                    if (System.nanoTime() - start > budgetNanos) {
+                        complete = false;
+                        continue;
+                    }
+                    tile = renderTile(column, row);
+                    tiles.put(key, tile);
+                }
+                g.drawImage(tile, (int) Math.round(column * (double) TILE_SIZE - viewX), (int) Math.round(row * (double) TILE_SIZE - viewY), null);
+            }
+        }
+        return complete;
+    }
+
+    private BufferedImage renderTile(int column, int row) {
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            double scale = scale();
+            renderTile(g, new Rectangle2D.Double(column * TILE_SIZE / scale, row * TILE_SIZE / scale,
+                    TILE_SIZE / scale, TILE_SIZE / scale), scale);
+        } finally {
+            g.dispose();
+        }
+        tilesRendered++;
+        return tile;
+    }
+}
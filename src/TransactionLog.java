@@ -0,0 +1,206 @@
+package project;
+
+class TransactionLog {
+    static final byte CUSTOMER_ADDED = 1;
+    static final byte MOVIE_ADDED = 2;
+    static final byte CONNECTED = 3;
+    static final byte COPIES_ADDED = 4;
+    static final byte RENTED = 5;
+    static final byte RETURNED = 6;
+    static final byte CANCELLED = 7;
+    static final byte ENQUEUED = 8;
+    static final byte DEQUEUED = 9;
+    static final byte PARKED = 10;
+    static final byte UNPARKED = 11;
+
+    private static final byte FIRST_IN_TRANSACTION = (byte) 0x80;
+    private static final int INITIAL_CAPACITY = 64;
+
+    interface Applier {
+        String describe(byte kind, int first, int second, long value, Object ref);
+        void undo(byte kind, int first, int second, long value, Object ref);
+        void redo(byte kind, int first, int second, long value, Object ref);
+    }
+
+    private final int maxRecords;
+    private byte[] kinds;
+    private int[] firsts;
+    private int[] seconds;
+    private long[] values;
+    private Object[] refs;
+    private int mask;
+
+    private long oldest;
+    private long applied;
+    private long newest;
+    private long transactionStart = -1;
+    private int depth;
+    private boolean startPending;
+    private boolean dropping;
+    private boolean suspended;
+    private long compacted;
+
+    TransactionLog(int maxRecords) {
+        this.maxRecords = Integer.highestOneBit(Math.max(maxRecords, 2) - 1) << 1;
+        allocate(Math.min(INITIAL_CAPACITY, this.maxRecords));
+    }
+
+    void begin() {
+        if (depth++ == 0) startPending = true;
+    }
+
+    void commit() {
+        if (--depth == 0) {
+            startPending = false;
+            dropping = false;
+        }
+    }
+
+    void record(byte kind, int first, int second, long value, Object ref) {
+        if (suspended) return;
+        boolean starts = depth == 0 || startPending;
+        if (starts) {
+            startPending = false;
+            dropping = false;
+            discardRedo();
+            transactionStart = applied;
+        } else if (dropping) {
+            return;
+        }
+        if (applied - oldest == kinds.length) {
+            if (kinds.length < maxRecords) {
+                allocate(kinds.length * 2);
+            } else {
+                dropOldestTransaction();
+                if (oldest > transactionStart) {
+                    transactionStart = -1;
+                    if (!starts) {
+                        dropping = depth > 0;
+                        return;
+                    }
+                }
+            }
+        }
+        int slot = (int) (applied & mask);
+        kinds[slot] = starts ? (byte) (kind | FIRST_IN_TRANSACTION) : kind;
+        firsts[slot] = first;
+        seconds[slot] = second;
+        values[slot] = value;
+        refs[slot] = ref;
+        applied++;
+        newest = applied;
+    }
+
+    String undo(Applier applier) {
+        if (applied == oldest) return null;
+        long start = applied - 1;
+        while (start > oldest && (kinds[(int) (start & mask)] & FIRST_IN_TRANSACTION) == 0) start--;
+        String description = describe(applier, start, applied);
+        suspended = true;
+        try {
+            for (long position = applied - 1; position >= start; position--) {
+                int slot = (int) (position & mask);
+                applier.undo(kind(slot), firsts[slot], seconds[slot], values[slot], refs[slot]);
+            }
+        } finally {
+            suspended = false;
+        }
+        applied = start;
+        return description;
+    }
+
+    String redo(Applier applier) {
+        if (applied == newest) return null;
+        long end = applied + 1;
+        while (end < newest && (kinds[(int) (end & mask)] & FIRST_IN_TRANSACTION) == 0) end++;
+        String description = describe(applier, applied, end);
+        suspended = true;
+        try {
+            for (long position = applied; position < end; position++) {
+                int slot = (int) (position & mask);
+                applier.redo(kind(slot), firsts[slot], seconds[slot], values[slot], refs[slot]);
+            }
+        } finally {
+            suspended = false;
+        }
+        applied = end;
+        return description;
+    }
+
+    void suspend() {
+        suspended = true;
+    }
+
+    void resume() {
+        suspended = false;
+    }
+
+    void clear() {
+        java.util.Arrays.fill(refs, null);
+        oldest = applied = newest = 0;
+        transactionStart = -1;
+        dropping = false;
+    }
+
+    int undoableRecords() {
+        return (int) (applied - oldest);
+    }
+
+    int redoableRecords() {
+        return (int) (newest - applied);
+    }
+
+    long compactedTransactions() {
+        return compacted;
+    }
+
+    private String describe(Applier applier, long from, long to) {
+        long primary = from;
+        while (primary < to - 1 && kind((int) (primary & mask)) == DEQUEUED) primary++;
+        int slot = (int) (primary & mask);
+        String description = applier.describe(kind(slot), firsts[slot], seconds[slot], values[slot], refs[slot]);
+        long others = to - from - 1;
+        return others == 0 ? description : description + " (+" + others + " more change" + (others == 1 ? "" : "s") + ")";
+    }
+
+    private byte kind(int slot) {
+        return (byte) (kinds[slot] & ~FIRST_IN_TRANSACTION);
+    }
+
+    private void discardRedo() {
+        for (long position = applied; position < newest; position++) refs[(int) (position & mask)] = null;
+        newest = applied;
+    }
+
+    private void dropOldestTransaction() {
+        long next = oldest + 1;
+        while (next < applied && (kinds[(int) (next & mask)] & FIRST_IN_TRANSACTION) == 0) next++;
+        for (long position = oldest; position < next; position++) refs[(int) (position & mask)] = null;
+        oldest = next;
+        compacted++;
+    }
+
+    private void allocate(int capacity) {
+        byte[] newKinds = new byte[capacity];
+        int[] newFirsts = new int[capacity];
+        int[] newSeconds = new int[capacity];
+        long[] newValues = new long[capacity];
+        Object[] newRefs = new Object[capacity];
+        int newMask = capacity - 1;
+        for (long position = oldest; kinds != null && position < newest; position++) {
+            int from = (int) (position & mask);
+            int to = (int) (position & newMask);
+            newKinds[to] = kinds[from];
+            newFirsts[to] = firsts[from];
+            newSeconds[to] = seconds[from];
+            newValues[to] = values[from];
+            newRefs[to] = refs[from];
+        }
+        kinds = newKinds;
+        firsts = newFirsts;
+        seconds = newSeconds;
+        values = newValues;
+        refs = newRefs;
+        mask = newMask;
+    }
+}